@@ -0,0 +1,120 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 用户最新认证记录的进程内缓存
+ */
+package com.springboot.logindemo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springboot.logindemo.dao.LatestAuthentication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * 按用户ID缓存最新认证记录（含没有记录的结果），前端轮询认证状态时不必每次查询数据库。
+ * 提交认证后清除本节点缓存，并通过独立的Redis频道通知其他节点；审核状态在别处被修改时最多滞后一个过期时间。
+ * 不与用户缓存共用频道，提交认证不会清除其他节点上该用户的用户缓存、权限索引和权限纪元。
+ */
+@Component
+public class AuthenticationStatusCache implements MessageListener, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthenticationStatusCache.class);
+
+    // 失效消息为用户ID
+    public static final String INVALIDATE_CHANNEL = "authentication:status:invalidate";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final boolean enabled;
+
+    private final Cache<Long, Optional<LatestAuthentication>> latest;
+
+    public AuthenticationStatusCache(@Value("${authentication.status-cache.enabled:true}") boolean enabled,
+            @Value("${authentication.status-cache.max-size:10000}") long maxSize,
+            @Value("${authentication.status-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.latest = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 读取用户最新认证记录，未命中时调用loader查询
+     *
+     * @param userId 用户ID
+     * @param loader 查询最新认证记录，没有时返回null
+     * @return 最新认证记录，没有时返回null
+     */
+    public LatestAuthentication get(Long userId, Function<Long, LatestAuthentication> loader) {
+        if (!enabled) {
+            return loader.apply(userId);
+        }
+        return latest.get(userId, id -> Optional.ofNullable(loader.apply(id))).orElse(null);
+    }
+
+    /**
+     * 用户提交了新的认证后清除缓存；在事务中调用时提交后再清除一次，
+     * 避免其他请求在提交前把旧记录重新写入缓存
+     *
+     * @param userId 用户ID
+     */
+    public void evict(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        evictNow(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(userId);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, latest, "authentication.status.local");
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            latest.invalidate(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            logger.warn("忽略无效的认证状态缓存失效消息: {}", body);
+        }
+    }
+
+    private void evictNow(Long userId) {
+        latest.invalidate(userId);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(userId));
+        } catch (Exception e) {
+            logger.warn("通知其他节点清除用户{}的认证状态缓存失败: {}", userId, e.getMessage());
+        }
+    }
+}
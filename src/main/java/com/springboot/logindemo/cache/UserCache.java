@@ -0,0 +1,490 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-7
+ * @description 用户两级缓存（进程内Caffeine + Redis）
+ */
+package com.springboot.logindemo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.repository.UserDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.Resource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 按uid、手机号、用户名读取用户的读穿透缓存。
+ * 一级缓存为进程内Caffeine（容量和过期时间淘汰），二级缓存为Redis：
+ * user:{uid} 存用户快照，user:phone:{phone} / user:uname:{uname} 存uid。
+ * 用户被保存或删除后清除本节点缓存，并通过Redis频道通知其他节点清除一级缓存。
+ * 每次清除先递增Redis中该用户的版本号（清空全部时递增全局版本号）：从数据库加载前读取版本号，
+ * 写回快照时由Lua脚本确认版本未变，加载期间被清除的旧快照不会写回Redis。
+ * 按手机号或用户名未命中时加载前还不知道uid，只写入索引键，快照留给下一次按uid加载时写入。
+ * 缓存中的用户是脱离持久化上下文的只读快照（不含密码和部门），需要修改用户或校验密码时仍应通过UserDao读取。
+ * 快照中的角色只有ID，角色的名称和权限通过getRoles从二级缓存读取：角色或权限变化只需清除二级缓存中的对应项，
+ * 不必清空用户缓存。
+ * 一级缓存的命中率和Redis访问失败次数通过Micrometer暴露。
+ */
+@Component
+public class UserCache implements MessageListener, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    public static final String INVALIDATE_CHANNEL = "user:cache:invalidate";
+
+    private static final String UID_KEY = "user:";
+    private static final String PHONE_KEY = "user:phone:";
+    private static final String UNAME_KEY = "user:uname:";
+    private static final String VERSION_KEY = "user:version:";
+    private static final String ALL_VERSION_KEY = VERSION_KEY + "all";
+
+    // KEYS: 用户版本、全局版本、快照；ARGV: 加载前读到的两个版本、快照、过期秒数
+    private static final RedisScript<Long> PUT_IF_VERSION = RedisScript.of(
+            "if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] or (redis.call('GET', KEYS[2]) or '0') ~= ARGV[2] then "
+                    + "return 0 end "
+                    + "redis.call('SET', KEYS[3], ARGV[3], 'EX', ARGV[4]) "
+                    + "return 1",
+            Long.class);
+
+    // 失效消息：清空全部
+    public static final String ALL = "*";
+
+    // 一次失效的用户数超过该值时改为清空全部，不再逐个发送失效消息
+    public static final int BULK_EVICT_THRESHOLD = 500;
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    // 失效消息使用纯文本发送
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<Long, User> users;
+
+    // 手机号/用户名 -> uid
+    private final Cache<String, Long> accounts;
+
+    private final long redisTtlHours;
+
+    // Redis读写失败次数，失败时降级为查询数据库
+    private final LongAdder redisErrors = new LongAdder();
+
+    public UserCache(@Value("${user.cache.local.max-size:10000}") long maxSize,
+            @Value("${user.cache.local.ttl-seconds:60}") long localTtlSeconds,
+            @Value("${user.cache.redis.ttl-hours:24}") long redisTtlHours) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .recordStats()
+                .build();
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(maxSize * 2)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .recordStats()
+                .build();
+        this.redisTtlHours = redisTtlHours;
+    }
+
+    public User getByUid(Long uid) {
+        if (uid == null) {
+            return null;
+        }
+        User user = users.getIfPresent(uid);
+        if (user != null) {
+            return user;
+        }
+        Object cached = redisGet(UID_KEY + uid);
+        user = cached instanceof User ? (User) cached : null;
+        if (user == null) {
+            List<String> versions = redisVersions(uid);
+            User entity = userDao.findWithRolesByUid(uid).orElse(null);
+            if (entity == null) {
+                return null;
+            }
+            user = snapshot(entity);
+            redisPut(user, versions);
+            redisPutAccounts(user);
+        }
+        users.put(uid, user);
+        return user;
+    }
+
+    public User getByPhonenum(String phonenum) {
+        User user = getCached(PHONE_KEY + phonenum, cached -> phonenum.equals(cached.getPhonenum()));
+        return user != null ? user : load(userDao.findWithPermissionsByPhonenum(phonenum));
+    }
+
+    public User getByUname(String uname) {
+        User user = getCached(UNAME_KEY + uname, cached -> uname.equals(cached.getUname()));
+        return user != null ? user : load(userDao.findWithPermissionsByUname(uname));
+    }
+
+    // 先按手机号再按用户名查找，缓存都未命中时只查询一次数据库
+    public User getByAccount(String account) {
+        User user = getCached(PHONE_KEY + account, cached -> account.equals(cached.getPhonenum()));
+        if (user == null) {
+            user = getCached(UNAME_KEY + account, cached -> account.equals(cached.getUname()));
+        }
+        if (user != null) {
+            return user;
+        }
+        List<User> users = userDao.findWithPermissionsByAccount(account);
+        return users.isEmpty() ? null : load(users.get(0));
+    }
+
+    /**
+     * 读取快照中角色的完整数据（含权限），角色和权限来自二级缓存，已删除的角色不返回
+     *
+     * @param user 缓存中的用户快照
+     * @return 脱离持久化上下文的角色副本
+     */
+    public Set<Role> getRoles(User user) {
+        Set<Role> roles = new HashSet<>();
+        if (user == null || user.getRoles() == null || user.getRoles().isEmpty()) {
+            return roles;
+        }
+        // 在事务中调用时使用事务的EntityManager，能读到本事务尚未提交的修改
+        EntityManager current = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        EntityManager entityManager = current != null ? current : entityManagerFactory.createEntityManager();
+        try {
+            for (Role stub : user.getRoles()) {
+                Role source = entityManager.find(Role.class, stub.getId());
+                if (source == null) {
+                    continue;
+                }
+                Role role = new Role();
+                role.setId(source.getId());
+                role.setName(source.getName());
+                role.setDescription(source.getDescription());
+                role.setActive(source.getActive());
+                role.setCreateTime(source.getCreateTime());
+                role.setUpdateTime(source.getUpdateTime());
+                if (source.getPermissions() != null) {
+                    role.setPermissions(new HashSet<>(source.getPermissions()));
+                }
+                roles.add(role);
+            }
+        } finally {
+            if (current == null) {
+                entityManager.close();
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * 清除用户的所有缓存并通知其他节点。在事务中调用时提交前后各清除一次，
+     * 避免其他请求在提交前把旧数据重新写入缓存。
+     *
+     * @param user 被修改或删除的用户
+     */
+    public void evict(User user) {
+        if (user == null) {
+            return;
+        }
+        Long uid = user.getUid();
+        evictNow(uid, user.getPhonenum(), user.getUname());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(uid, user.getPhonenum(), user.getUname());
+                }
+            });
+        }
+    }
+
+    // 只知道uid时（如deleteById）清除缓存
+    public void evictById(Long uid) {
+        User user = new User();
+        user.setUid(uid);
+        evict(user);
+    }
+
+    // 批量修改后清除一组用户；数量很大时直接清空，避免逐个发送失效消息
+    public void evictByIds(Collection<Long> uids) {
+        if (uids.size() > BULK_EVICT_THRESHOLD) {
+            evictAll();
+            return;
+        }
+        uids.forEach(this::evictById);
+    }
+
+    /**
+     * 清空本节点并删除Redis中的全部用户缓存。
+     * 与evict相同，在事务中调用时提交后再清空一次
+     */
+    public void evictAll() {
+        evictAllNow();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAllNow();
+                }
+            });
+        }
+    }
+
+    private void evictAllNow() {
+        users.invalidateAll();
+        accounts.invalidateAll();
+        try {
+            stringRedisTemplate.opsForValue().increment(ALL_VERSION_KEY);
+            for (String pattern : new String[] { UID_KEY + "[0-9]*", PHONE_KEY + "*", UNAME_KEY + "*" }) {
+                Set<String> keys = new HashSet<>();
+                try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(500)
+                        .build())) {
+                    cursor.forEachRemaining(keys::add);
+                }
+                if (!keys.isEmpty()) {
+                    redisTemplate.delete(keys);
+                }
+            }
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, ALL);
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("清空用户Redis缓存失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, users, "user.local");
+        CaffeineCacheMetrics.monitor(registry, accounts, "user.account.local");
+        FunctionCounter.builder("user.cache.redis.errors", redisErrors, LongAdder::sum)
+                .description("用户缓存访问Redis失败的次数").register(registry);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (ALL.equals(body)) {
+            users.invalidateAll();
+            accounts.invalidateAll();
+            return;
+        }
+        try {
+            evictLocal(Long.parseLong(body));
+        } catch (NumberFormatException e) {
+            logger.warn("忽略无效的用户缓存失效消息: {}", body);
+        }
+    }
+
+    private User getCached(String key, Predicate<User> matches) {
+        Long uid = accounts.getIfPresent(key);
+        if (uid == null) {
+            Object cached = redisGet(key);
+            if (cached instanceof Number) {
+                uid = ((Number) cached).longValue();
+            }
+        }
+        if (uid == null) {
+            return null;
+        }
+        User user = getByUid(uid);
+        // 索引可能指向已改过手机号/用户名的用户
+        if (user == null || !matches.test(user)) {
+            return null;
+        }
+        accounts.put(key, uid);
+        return user;
+    }
+
+    private User load(User entity) {
+        if (entity == null) {
+            return null;
+        }
+        User user = snapshot(entity);
+        redisPutAccounts(user);
+        users.put(user.getUid(), user);
+        if (user.getPhonenum() != null) {
+            accounts.put(PHONE_KEY + user.getPhonenum(), user.getUid());
+        }
+        if (user.getUname() != null) {
+            accounts.put(UNAME_KEY + user.getUname(), user.getUid());
+        }
+        return user;
+    }
+
+    private void evictNow(Long uid, String phonenum, String uname) {
+        Set<String> keys = new HashSet<>();
+        keys.add(UID_KEY + uid);
+        addAccountKeys(keys, phonenum, uname);
+        // 手机号或用户名被修改时，旧的索引键记录在缓存的快照中
+        User previous = users.getIfPresent(uid);
+        if (previous == null) {
+            Object cached = redisGet(UID_KEY + uid);
+            previous = cached instanceof User ? (User) cached : null;
+        }
+        if (previous != null) {
+            addAccountKeys(keys, previous.getPhonenum(), previous.getUname());
+        }
+
+        users.invalidate(uid);
+        accounts.invalidateAll(keys);
+        try {
+            // 先递增版本再删除：删除之后不会再有加载前读到旧版本的快照写入
+            stringRedisTemplate.opsForValue().increment(VERSION_KEY + uid);
+            stringRedisTemplate.expire(VERSION_KEY + uid, Duration.ofHours(redisTtlHours));
+            redisTemplate.delete(keys);
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(uid));
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("清除用户{}的Redis缓存失败: {}", uid, e.getMessage());
+        }
+    }
+
+    // 其他节点通知的失效：按本节点快照中的手机号和用户名清除索引键；
+    // 快照已被淘汰时残留的索引键在读取时会与用户核对，指向已改名的用户时视为未命中
+    private void evictLocal(Long uid) {
+        User previous = users.getIfPresent(uid);
+        users.invalidate(uid);
+        if (previous != null) {
+            Set<String> keys = new HashSet<>();
+            addAccountKeys(keys, previous.getPhonenum(), previous.getUname());
+            accounts.invalidateAll(keys);
+        }
+    }
+
+    private static void addAccountKeys(Set<String> keys, String phonenum, String uname) {
+        if (phonenum != null) {
+            keys.add(PHONE_KEY + phonenum);
+        }
+        if (uname != null) {
+            keys.add(UNAME_KEY + uname);
+        }
+    }
+
+    private Object redisGet(String key) {
+        try {
+            return redisTemplate.opsForValue().get(key);
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("读取Redis缓存{}失败: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    // 从数据库加载前读取用户版本和全局版本，Redis不可用时返回null，不再写回快照
+    private List<String> redisVersions(Long uid) {
+        try {
+            List<String> versions = stringRedisTemplate.opsForValue().multiGet(List.of(VERSION_KEY + uid,
+                    ALL_VERSION_KEY));
+            if (versions == null) {
+                return null;
+            }
+            return versions.stream().map(version -> version == null ? "0" : version).toList();
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("读取用户{}的缓存版本失败: {}", uid, e.getMessage());
+            return null;
+        }
+    }
+
+    // 版本与加载前一致时才写入快照
+    @SuppressWarnings("unchecked")
+    private void redisPut(User user, List<String> versions) {
+        if (versions == null) {
+            return;
+        }
+        try {
+            byte[] value = ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(user);
+            redisTemplate.execute(PUT_IF_VERSION, RedisSerializer.byteArray(),
+                    new GenericToStringSerializer<>(Long.class),
+                    List.of(VERSION_KEY + user.getUid(), ALL_VERSION_KEY, UID_KEY + user.getUid()),
+                    bytes(versions.get(0)), bytes(versions.get(1)), value,
+                    bytes(String.valueOf(TimeUnit.HOURS.toSeconds(redisTtlHours))));
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("写入用户{}的Redis缓存失败: {}", user.getUid(), e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 手机号、用户名到uid的索引键：读取时会与快照核对，不需要版本校验
+    private void redisPutAccounts(User user) {
+        try {
+            if (user.getPhonenum() != null) {
+                redisTemplate.opsForValue().set(PHONE_KEY + user.getPhonenum(), user.getUid(), redisTtlHours,
+                        TimeUnit.HOURS);
+            }
+            if (user.getUname() != null) {
+                redisTemplate.opsForValue().set(UNAME_KEY + user.getUname(), user.getUid(), redisTtlHours,
+                        TimeUnit.HOURS);
+            }
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("写入用户{}的Redis缓存失败: {}", user.getUid(), e.getMessage());
+        }
+    }
+
+    /**
+     * 复制出不依赖Hibernate会话的用户快照：角色换成只有ID的普通集合，不包含密码和部门
+     *
+     * @param entity 用户实体
+     * @return 用户快照
+     */
+    public static User snapshot(User entity) {
+        User user = new User();
+        user.setUid(entity.getUid());
+        user.setUname(entity.getUname());
+        user.setPhonenum(entity.getPhonenum());
+        user.setLoginPermission(entity.getLoginPermission());
+        user.setAdminPermission(entity.getAdminPermission());
+        user.setCreateTime(entity.getCreateTime());
+        user.setUpdateTime(entity.getUpdateTime());
+        if (entity.getRoles() != null) {
+            Set<Role> roles = new HashSet<>();
+            for (Role source : entity.getRoles()) {
+                Role role = new Role();
+                role.setId(source.getId());
+                roles.add(role);
+            }
+            user.setRoles(roles);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-7
+ * @description 用户缓存失效切面
+ */
+package com.springboot.logindemo.cache;
+
+import com.springboot.logindemo.domain.User;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 在UserDao保存/删除用户后清除用户缓存。用户快照只保存角色ID，RoleDao、PermissionDao的写入不再清空用户缓存，
+ * 角色和权限的二级缓存由Hibernate在本节点更新，其他节点由权限索引的失效消息清除
+ */
+@Aspect
+@Component
+public class UserCacheAspect {
+
+    private final UserCache userCache;
+
+    @Autowired
+    public UserCacheAspect(UserCache userCache) {
+        this.userCache = userCache;
+    }
+
+    @AfterReturning("this(com.springboot.logindemo.repository.UserDao) && (execution(* save*(..)) || execution(* delete*(..)))")
+    public void afterUserWrite(JoinPoint joinPoint) {
+        for (Object arg : joinPoint.getArgs()) {
+            evict(arg);
+        }
+    }
+
+    private void evict(Object arg) {
+        if (arg instanceof User) {
+            userCache.evict((User) arg);
+        } else if (arg instanceof Long) {
+            userCache.evictById((Long) arg);
+        } else if (arg instanceof Iterable) {
+            for (Object item : (Iterable<?>) arg) {
+                evict(item);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-9
+ * @description 带版本数据头的Redis值序列化器
+ */
+package com.springboot.logindemo.cache.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据格式：魔数(0xCB) + 类型标记 + 格式版本 + 编码内容。
+ * 已注册编解码器的类型写为紧凑二进制，其他类型以标记0包装JSON。
+ * 读取时首字节不是魔数的数据视为旧版本直接写入的JSON，交给JSON序列化器解析。
+ */
+public class CacheValueSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xCB;
+    static final byte JSON_TAG = 0;
+    private static final int HEADER_LENGTH = 3;
+
+    private final Map<Class<?>, ValueCodec<?>> codecsByType = new HashMap<>();
+    private final ValueCodec<?>[] codecsByTag = new ValueCodec<?>[128];
+    private final RedisSerializer<Object> json;
+
+    public CacheValueSerializer(List<ValueCodec<?>> codecs, RedisSerializer<Object> json) {
+        for (ValueCodec<?> codec : codecs) {
+            if (codec.tag() <= JSON_TAG || codecsByTag[codec.tag()] != null) {
+                throw new IllegalArgumentException("编解码器类型标记无效或重复: " + codec.tag());
+            }
+            codecsByType.put(codec.type(), codec);
+            codecsByTag[codec.tag()] = codec;
+        }
+        this.json = json;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        ValueCodec<Object> codec = (ValueCodec<Object>) codecsByType.get(value.getClass());
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(MAGIC);
+            if (codec == null) {
+                out.writeByte(JSON_TAG);
+                out.writeByte(1);
+                out.write(json.serialize(value));
+            } else {
+                out.writeByte(codec.tag());
+                out.writeByte(codec.version());
+                codec.write(value, out);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("缓存值序列化失败: " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            // 旧格式：无数据头的JSON
+            return json.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("缓存值数据头不完整");
+        }
+        byte tag = bytes[1];
+        byte version = bytes[2];
+        if (tag == JSON_TAG) {
+            return json.deserialize(Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length));
+        }
+        ValueCodec<?> codec = tag > 0 ? codecsByTag[tag] : null;
+        if (codec == null) {
+            throw new SerializationException("未知的缓存值类型标记: " + tag);
+        }
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH));
+            return codec.read(in, version);
+        } catch (IOException e) {
+            throw new SerializationException("缓存值反序列化失败: " + codec.type().getName(), e);
+        }
+    }
+}
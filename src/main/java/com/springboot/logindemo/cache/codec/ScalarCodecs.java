@@ -0,0 +1,71 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-9
+ * @description 基本类型缓存值编解码器
+ */
+package com.springboot.logindemo.cache.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public final class ScalarCodecs {
+
+    private ScalarCodecs() {
+    }
+
+    public static final ValueCodec<Long> LONG = new ValueCodec<>() {
+        @Override
+        public byte tag() {
+            return 2;
+        }
+
+        @Override
+        public Class<Long> type() {
+            return Long.class;
+        }
+
+        @Override
+        public byte version() {
+            return 1;
+        }
+
+        @Override
+        public void write(Long value, DataOutputStream out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(DataInputStream in, byte version) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    public static final ValueCodec<String> STRING = new ValueCodec<>() {
+        @Override
+        public byte tag() {
+            return 3;
+        }
+
+        @Override
+        public Class<String> type() {
+            return String.class;
+        }
+
+        @Override
+        public byte version() {
+            return 1;
+        }
+
+        @Override
+        public void write(String value, DataOutputStream out) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInputStream in, byte version) throws IOException {
+            return in.readUTF();
+        }
+    };
+}
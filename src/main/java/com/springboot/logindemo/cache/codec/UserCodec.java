@@ -0,0 +1,135 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-9
+ * @description 用户缓存快照编解码器
+ */
+package com.springboot.logindemo.cache.codec;
+
+import com.springboot.logindemo.domain.Permission;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.springboot.logindemo.cache.codec.CodecSupport.*;
+
+/**
+ * 版本2的字段顺序（版本1相同，只是整数字段为一个字节，-128表示null，超出范围的值会被截断）：
+ * uid, uname, phonenum, loginPermission, adminPermission, createTime, updateTime,
+ * 角色数, 每个角色(id, name, description, active, createTime, updateTime, 权限数, 每个权限(id, name, description, active, createTime, updateTime))。
+ * 可空的整数字段先写是否为null再写四字节整数。不写入密码哈希和部门；角色数为-1表示roles为null。
+ */
+public class UserCodec implements ValueCodec<User> {
+
+    @Override
+    public byte tag() {
+        return 1;
+    }
+
+    @Override
+    public Class<User> type() {
+        return User.class;
+    }
+
+    @Override
+    public byte version() {
+        return 2;
+    }
+
+    @Override
+    public void write(User user, DataOutputStream out) throws IOException {
+        out.writeLong(user.getUid());
+        writeString(out, user.getUname());
+        writeString(out, user.getPhonenum());
+        writeInteger(out, user.getLoginPermission());
+        writeInteger(out, user.getAdminPermission());
+        writeTime(out, user.getCreateTime());
+        writeTime(out, user.getUpdateTime());
+
+        Set<Role> roles = user.getRoles();
+        out.writeInt(roles == null ? -1 : roles.size());
+        if (roles == null) {
+            return;
+        }
+        for (Role role : roles) {
+            writeLong(out, role.getId());
+            writeString(out, role.getName());
+            writeString(out, role.getDescription());
+            writeInteger(out, role.getActive());
+            writeTime(out, role.getCreateTime());
+            writeTime(out, role.getUpdateTime());
+
+            Set<Permission> permissions = role.getPermissions();
+            out.writeInt(permissions == null ? -1 : permissions.size());
+            if (permissions == null) {
+                continue;
+            }
+            for (Permission permission : permissions) {
+                writeLong(out, permission.getId());
+                writeString(out, permission.getName());
+                writeString(out, permission.getDescription());
+                writeInteger(out, permission.getActive());
+                writeTime(out, permission.getCreateTime());
+                writeTime(out, permission.getUpdateTime());
+            }
+        }
+    }
+
+    @Override
+    public User read(DataInputStream in, byte version) throws IOException {
+        if (version != 1 && version != 2) {
+            throw new IOException("不支持的用户缓存格式版本: " + version);
+        }
+        User user = new User();
+        user.setUid(in.readLong());
+        user.setUname(readString(in));
+        user.setPhonenum(readString(in));
+        user.setLoginPermission(readInt(in, version));
+        user.setAdminPermission(readInt(in, version));
+        user.setCreateTime(readTime(in));
+        user.setUpdateTime(readTime(in));
+
+        int roleCount = in.readInt();
+        if (roleCount < 0) {
+            return user;
+        }
+        Set<Role> roles = new HashSet<>();
+        for (int i = 0; i < roleCount; i++) {
+            Role role = new Role();
+            role.setId(readLong(in));
+            role.setName(readString(in));
+            role.setDescription(readString(in));
+            role.setActive(readInt(in, version));
+            role.setCreateTime(readTime(in));
+            role.setUpdateTime(readTime(in));
+
+            int permissionCount = in.readInt();
+            if (permissionCount >= 0) {
+                Set<Permission> permissions = new HashSet<>();
+                for (int j = 0; j < permissionCount; j++) {
+                    Permission permission = new Permission();
+                    permission.setId(readLong(in));
+                    permission.setName(readString(in));
+                    permission.setDescription(readString(in));
+                    permission.setActive(readInt(in, version));
+                    permission.setCreateTime(readTime(in));
+                    permission.setUpdateTime(readTime(in));
+                    permissions.add(permission);
+                }
+                role.setPermissions(permissions);
+            }
+            roles.add(role);
+        }
+        user.setRoles(roles);
+        return user;
+    }
+
+    private static Integer readInt(DataInputStream in, byte version) throws IOException {
+        return version == 1 ? readSmallInt(in) : readInteger(in);
+    }
+}
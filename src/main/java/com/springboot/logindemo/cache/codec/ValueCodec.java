@@ -0,0 +1,32 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-9
+ * @description 缓存值二进制编解码器
+ */
+package com.springboot.logindemo.cache.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 一种缓存类型的二进制编码。每个编解码器占用一个类型标记，
+ * 写入时使用当前版本，读取时按数据头中的版本解码，以便滚动发布期间新旧节点互相读取。
+ *
+ * @param <T> 缓存值类型
+ */
+public interface ValueCodec<T> {
+
+    // 数据头中的类型标记，0保留给JSON
+    byte tag();
+
+    Class<T> type();
+
+    // 当前写入的格式版本
+    byte version();
+
+    void write(T value, DataOutputStream out) throws IOException;
+
+    T read(DataInputStream in, byte version) throws IOException;
+}
@@ -6,11 +6,15 @@
  */
 package com.springboot.logindemo.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
@@ -18,17 +22,44 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.springboot.logindemo.cache.AuthenticationStatusCache;
+import com.springboot.logindemo.cache.UserCache;
+import com.springboot.logindemo.cache.codec.CacheValueSerializer;
+import com.springboot.logindemo.cache.codec.ScalarCodecs;
+import com.springboot.logindemo.cache.codec.UserCodec;
+import com.springboot.logindemo.security.PermissionEpoch;
+import com.springboot.logindemo.security.PermissionIndex;
 import java.text.SimpleDateFormat;
+import java.util.List;
 
 @Configuration
 public class RedisConfig {
+    // 缓存值格式：binary为带版本数据头的紧凑二进制（其他类型回退为JSON），json为原有的JSON格式
+    @Value("${redis.value.format:binary}")
+    private String valueFormat;
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
 
-        // 使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
-        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(Object.class);
+        RedisSerializer<Object> serializer = "json".equalsIgnoreCase(valueFormat) ? jsonSerializer()
+                : binarySerializer();
+
+        // 使用StringRedisSerializer来序列化和反序列化redis的key值
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(serializer);
+
+        // Hash的key也采用StringRedisSerializer的序列化方式
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(serializer);
+
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    // 使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
+    public static Jackson2JsonRedisSerializer<Object> jsonSerializer() {
         ObjectMapper mapper = new ObjectMapper();
 
         // 添加Java 8日期时间模块支持
@@ -40,17 +71,29 @@ public class RedisConfig {
 
         mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
-        serializer.setObjectMapper(mapper);
-
-        // 使用StringRedisSerializer来序列化和反序列化redis的key值
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(serializer);
+        return new Jackson2JsonRedisSerializer<>(mapper, Object.class);
+    }
 
-        // Hash的key也采用StringRedisSerializer的序列化方式
-        template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(serializer);
+    // 已注册类型写为二进制，仍可读取无数据头的旧JSON数据
+    public static CacheValueSerializer binarySerializer() {
+        return new CacheValueSerializer(List.of(new UserCodec(), ScalarCodecs.LONG, ScalarCodecs.STRING),
+                jsonSerializer());
+    }
 
-        template.afterPropertiesSet();
-        return template;
+    // 订阅用户缓存、权限索引、权限纪元（共用一个频道）、权限索引的角色权限频道和认证状态缓存（独立频道）的失效消息，
+    // 其他节点保存用户、修改角色权限或提交认证后清除本节点的缓存
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory,
+            UserCache userCache, PermissionIndex permissionIndex, PermissionEpoch permissionEpoch,
+            AuthenticationStatusCache authenticationStatusCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(userCache, new ChannelTopic(UserCache.INVALIDATE_CHANNEL));
+        container.addMessageListener(permissionIndex, new ChannelTopic(UserCache.INVALIDATE_CHANNEL));
+        container.addMessageListener(permissionIndex, new ChannelTopic(PermissionIndex.INVALIDATE_CHANNEL));
+        container.addMessageListener(permissionEpoch, new ChannelTopic(UserCache.INVALIDATE_CHANNEL));
+        container.addMessageListener(authenticationStatusCache,
+                new ChannelTopic(AuthenticationStatusCache.INVALIDATE_CHANNEL));
+        return container;
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,34 @@
 package com.springboot.logindemo.config;
 
+import com.springboot.logindemo.storage.BlobFileHandler;
+import com.springboot.logindemo.storage.FileAccessInterceptor;
+import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.time.Duration;
+import java.util.Map;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     @Value("${file.upload.path}")
     private String fileUploadPath;
 
+    @Value("${file.access.max-age-hours:24}")
+    private long fileMaxAgeHours;
+
+    @Resource
+    private FileAccessInterceptor fileAccessInterceptor;
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -24,8 +41,24 @@ public class WebConfig implements WebMvcConfigurer {
 
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 配置静态资源映射
+        // 配置静态资源映射；/files/blobs/**由blobFileHandlerMapping处理，这里只剩按日期存放的旧文件
         registry.addResourceHandler("/files/**")
-                .addResourceLocations("file:" + fileUploadPath + "/");
+                .addResourceLocations("file:" + fileUploadPath + "/")
+                .setCacheControl(CacheControl.maxAge(Duration.ofHours(fileMaxAgeHours)).cachePrivate());
+    }
+
+    // 上传文件只能通过签名链接访问，静态资源映射和blobFileHandlerMapping都要校验
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(fileAccessInterceptor).addPathPatterns("/files/**");
+    }
+
+    // 排在注解接口之后、静态资源映射之前，按内容寻址的文件带强ETag和immutable缓存头
+    @Bean
+    public SimpleUrlHandlerMapping blobFileHandlerMapping(BlobFileHandler blobFileHandler) {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping(Map.of("/files/blobs/**", blobFileHandler));
+        mapping.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+        mapping.setInterceptors(fileAccessInterceptor);
+        return mapping;
     }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@
  */
 package com.springboot.logindemo.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
@@ -27,13 +28,20 @@ public class securityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/user/**","/api/role/**", "/api/department/**")
                         .permitAll() // 放行指定路径
+                        .requestMatchers("/api/authentication/**")
+                        .permitAll() // 令牌过滤器不建立安全上下文，提交、上传和状态查询各自校验token
+                        .requestMatchers("/actuator/health", "/actuator/prometheus")
+                        .permitAll() // 健康检查和Prometheus抓取端点，只在management.server.port上监听本机，公网端口不提供
+                        .requestMatchers("/files/**")
+                        .permitAll() // 上传文件由页面直接引用，不带令牌；FileAccessInterceptor校验链接的签名和过期时间
                         .anyRequest().authenticated() // 所有其他请求需要认证
                 );
         return http.build();
     }
 
+    // 加密强度可配置，修改后已有用户在下次登录时自动按新强度重新加密
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(@Value("${password.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
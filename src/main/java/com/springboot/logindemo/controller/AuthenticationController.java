@@ -3,6 +3,7 @@ package com.springboot.logindemo.controller;
 import com.springboot.logindemo.utils.Result;
 import com.springboot.logindemo.dto.AuthenticationDto;
 import com.springboot.logindemo.service.AuthenticationService;
+import com.springboot.logindemo.utils.JwtUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -47,16 +48,28 @@ public class AuthenticationController {
     }
 
     /**
-     * 上传认证文件
+     * 上传认证文件，先校验token再读取文件。
+     * token为必填参数（此前的版本不需要），缺少或无效时返回code"123"，文件不会被保存。
+     * 返回的是临时链接（用于上传后预览）：文件不关联任何认证记录，链接过期后不可访问，
+     * 内容在file.blob.orphan-grace-hours后被清除；认证材料须随/submit一起提交
      * 
+     * @param token    用户token
      * @param file     文件
      * @param fileType 文件类型
      * @return Result
      */
     @PostMapping("/upload")
-    public Result<String> uploadFile(@RequestParam("file") MultipartFile file,
+    public Result<String> uploadFile(@RequestParam(value = "token", required = false) String token,
+            @RequestParam("file") MultipartFile file,
             @RequestParam("fileType") String fileType) {
         try {
+            if (token == null || token.trim().isEmpty()) {
+                return Result.error("123", "Token不能为空");
+            }
+            if (!JwtUtils.validateToken(token)) {
+                return Result.error("123", "无效的token");
+            }
+
             logger.info("开始上传文件: {}, 类型: {}", file.getOriginalFilename(), fileType);
 
             if (file.isEmpty()) {
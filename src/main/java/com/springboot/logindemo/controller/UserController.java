@@ -12,23 +12,36 @@ import com.springboot.logindemo.domain.Department;
 import com.springboot.logindemo.dto.*;
 import com.springboot.logindemo.repository.UserDao;
 import com.springboot.logindemo.repository.RoleDao;
+import com.springboot.logindemo.security.PasswordHasherBusyException;
+import com.springboot.logindemo.security.PermissionEpoch;
+import com.springboot.logindemo.service.SmsService;
+import com.springboot.logindemo.service.UserExportService;
+import com.springboot.logindemo.service.UserImportService;
 import com.springboot.logindemo.service.UserService;
+import com.springboot.logindemo.sms.SmsRateLimitedException;
 import com.springboot.logindemo.utils.Result;
-import com.springboot.logindemo.utils.SMSUtils;
 import com.springboot.logindemo.utils.ValidateCodeUtils;
 import com.springboot.logindemo.utils.JwtUtils;
+import com.springboot.logindemo.verify.VerificationCodeStore;
 import jakarta.annotation.Resource;
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.data.redis.core.RedisTemplate;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.time.LocalDateTime;
 import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @RestController
@@ -44,7 +57,21 @@ public class UserController {
     private RoleDao roleDao;
 
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private PermissionEpoch permissionEpoch;
+
+    @Resource
+    private SmsService smsService;
+
+    @Resource
+    private VerificationCodeStore verificationCodeStore;
+
+    @Resource
+    private UserExportService userExportService;
+
+    @Resource
+    private UserImportService userImportService;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
     /**
      * @author 潘楠
@@ -59,7 +86,9 @@ public class UserController {
      */
     @PostMapping("/login/password")
     public Result<Map<String, Object>> loginController(@RequestBody LoginRequestDto loginRequest) {
-        User user = userService.loginService(loginRequest.getAccount(), loginRequest.getPassword());
+        AtomicLong epoch = new AtomicLong();
+        User user = userService.loginService(loginRequest.getAccount(), loginRequest.getPassword(),
+                uid -> epoch.set(permissionEpoch.current(uid)));
         if (user != null) {
             if (user.getLoginPermission() != 1) {
                 return Result.error("123", "该账号已被禁止登录！");
@@ -75,18 +104,8 @@ public class UserController {
                 }
             }
 
-            // 从数据库重新获取最新的用户信息
-            user = userDao.findById(user.getUid()).orElse(null);
-            if (user == null) {
-                return Result.error("123", "用户不存在");
-            }
-
-            String token = JwtUtils.generateToken(String.valueOf(user.getUid()));
-            String redisKey = "user:" + user.getUid();
-            // 删除旧的缓存
-            redisTemplate.delete(redisKey);
-            // 设置新的缓存
-            redisTemplate.opsForValue().set(redisKey, user, 24, TimeUnit.HOURS);
+            // 纪元在loginService加载用户之前读取
+            String token = JwtUtils.generateToken(user, epoch.get());
 
             Map<String, Object> response = new HashMap<>();
             response.put("token", token);
@@ -111,58 +130,38 @@ public class UserController {
      * @throws 注册失败 code:"123"
      */
     @PostMapping("/register")
-    public Result<Map<String, Object>> registerController(@RequestBody RegisterRequestDto registerRequest,
-            HttpSession session) {
+    public Result<Map<String, Object>> registerController(@RequestBody RegisterRequestDto registerRequest) {
         String phone = registerRequest.getPhoneNum();
         String code = registerRequest.getVerifyCode();
-        String codeKey = (String) session.getAttribute(phone);
 
-        if (codeKey == null) {
-            return Result.error("123", "验证码已过期或电话号码错误");
-        }
-        if (!codeKey.equals(code)) {
-            return Result.error("123", "验证码错误");
-        }
-
-        // 验证两次输入的密码是否一致
+        // 验证两次输入的密码是否一致，放在校验验证码之前，避免输错密码时浪费验证码
         if (!registerRequest.getPassword().equals(registerRequest.getPasswordAgain())) {
             return Result.error("123", "密码输入不一致");
         }
 
-        // 首先测试Redis连接
-        try {
-            String testKey = "test:redis:connection";
-            redisTemplate.opsForValue().set(testKey, "test", 1, TimeUnit.SECONDS);
-            redisTemplate.delete(testKey);
-        } catch (Exception e) {
-            return Result.error("123", "系统暂时无法提供服务，请稍后重试");
+        String codeError = consumeVerifyCode(phone, code);
+        if (codeError != null) {
+            return Result.error("123", codeError);
         }
 
         try {
-            User user = userService.registerService(phone, registerRequest.getPassword(), registerRequest.getUname());
+            AtomicLong epoch = new AtomicLong();
+            User user = userService.registerService(phone, registerRequest.getPassword(), registerRequest.getUname(),
+                    uid -> epoch.set(permissionEpoch.current(uid)));
             if (user == null) {
                 return Result.error("456", "用户已存在！");
             }
 
-            String token = JwtUtils.generateToken(String.valueOf(user.getUid()));
-            String redisKey = "user:" + user.getUid();
-
-            try {
-                redisTemplate.opsForValue().set(redisKey, user, 24, TimeUnit.HOURS);
-            } catch (Exception e) {
-                // 如果Redis操作失败，删除已创建的用户
-                userService.deleteUser(phone);
-                throw new RuntimeException("用户注册失败，请稍后重试");
-            }
+            String token = JwtUtils.generateToken(user, epoch.get());
 
             Map<String, Object> response = new HashMap<>();
             response.put("token", token);
             user.setPassword("");
             response.put("user", user);
 
-            session.removeAttribute(phone);
-
             return Result.success(response, "注册成功！");
+        } catch (PasswordHasherBusyException e) {
+            throw e;
         } catch (RuntimeException e) {
             return Result.error("123", e.getMessage());
         } catch (Exception e) {
@@ -179,13 +178,25 @@ public class UserController {
      * @throws 发送验证码失败 code:"123"
      */
     @PostMapping("/sendMsg")
-    public Result<String> sendMsg(@RequestParam String phoneNum, HttpSession session) {
+    public Result<String> sendMsg(@RequestParam String phoneNum) {
         if (StringUtils.isEmpty(phoneNum)) {
             return Result.error("123", "短信发送失败");
         }
+        try {
+            smsService.acquireSendPermit(phoneNum);
+        } catch (SmsRateLimitedException e) {
+            return Result.error("429", e.getMessage());
+        }
         String code = ValidateCodeUtils.generateValidateCode(4).toString();
-        SMSUtils.sendMessage("验证码短信", "SMS_313071554", phoneNum, code);
-        session.setAttribute(phoneNum, code);
+        // 验证码保存后短信进入发送队列，不等待短信服务商响应
+        if (!verificationCodeStore.save(phoneNum, code)) {
+            return Result.error("429", "验证码错误次数过多，请稍后再试");
+        }
+        try {
+            smsService.sendVerifyCode(phoneNum, code);
+        } catch (RuntimeException e) {
+            return Result.error("123", e.getMessage());
+        }
         return Result.success(code, "验证码短信发送成功");
     }
 
@@ -201,20 +212,18 @@ public class UserController {
      * @throws 登录失败 code:"123"
      */
     @PostMapping("/login/verify")
-    public Result<Map<String, Object>> login(@RequestBody VerifyLoginRequestDto verifyRequest, HttpSession session) {
+    public Result<Map<String, Object>> login(@RequestBody VerifyLoginRequestDto verifyRequest) {
         try {
             String phone = verifyRequest.getPhoneNum();
             String code = verifyRequest.getVerifyCode();
-            String codeKey = (String) session.getAttribute(phone);
 
-            if (codeKey == null) {
-                return Result.error("123", "验证码已过期或电话号码错误");
-            }
-            if (!codeKey.equals(code)) {
-                return Result.error("123", "验证码错误");
+            String codeError = consumeVerifyCode(phone, code);
+            if (codeError != null) {
+                return Result.error("123", codeError);
             }
 
-            User user = userService.verifyService(phone);
+            AtomicLong epoch = new AtomicLong();
+            User user = userService.verifyService(phone, uid -> epoch.set(permissionEpoch.current(uid)));
             if (user != null) {
                 if (user.getLoginPermission() != 1) {
                     return Result.error("123", "该账号已被禁止登录！");
@@ -230,26 +239,13 @@ public class UserController {
                     }
                 }
 
-                // 从数据库重新获取最新的用户信息
-                user = userDao.findById(user.getUid()).orElse(null);
-                if (user == null) {
-                    return Result.error("123", "用户不存在");
-                }
-
-                String token = JwtUtils.generateToken(String.valueOf(user.getUid()));
-                String redisKey = "user:" + user.getUid();
-                // 删除旧的缓存
-                redisTemplate.delete(redisKey);
-                // 设置新的缓存
-                redisTemplate.opsForValue().set(redisKey, user, 24, TimeUnit.HOURS);
+                // 纪元在verifyService加载用户之前读取
+                String token = JwtUtils.generateToken(user, epoch.get());
 
                 Map<String, Object> response = new HashMap<>();
                 response.put("token", token);
                 response.put("user", user);
 
-                session.removeAttribute("codeKey");
-                session.removeAttribute(codeKey);
-
                 return Result.success(response, "登录成功！");
             }
             return Result.error("123", "登录失败");
@@ -272,24 +268,22 @@ public class UserController {
      * @throws 修改密码失败 code:"123"
      */
     @PostMapping("/changePassword")
-    public Result<Map<String, Object>> changePassword(@RequestBody ChangePasswordRequestDto changeRequest,
-            HttpSession session) {
+    public Result<Map<String, Object>> changePassword(@RequestBody ChangePasswordRequestDto changeRequest) {
         try {
             String phone = changeRequest.getPhoneNum();
             String code = changeRequest.getVerifyCode();
-            String codeKey = (String) session.getAttribute(phone);
 
-            if (codeKey == null) {
-                return Result.error("123", "验证码已过期或电话号码错误");
-            }
-            if (!codeKey.equals(code)) {
-                return Result.error("123", "验证码错误");
+            String codeError = consumeVerifyCode(phone, code);
+            if (codeError != null) {
+                return Result.error("123", codeError);
             }
 
-            User user = userService.verifyService(phone);
-            String token = JwtUtils.generateToken(String.valueOf(user.getUid()));
-            String redisKey = "user:" + user.getUid();
-            redisTemplate.opsForValue().set(redisKey, user, 24, TimeUnit.HOURS);
+            AtomicLong epoch = new AtomicLong();
+            User user = userService.verifyService(phone, uid -> epoch.set(permissionEpoch.current(uid)));
+            if (user == null) {
+                return Result.error("123", "密码修改失败，用户不存在");
+            }
+            String token = JwtUtils.generateToken(user, epoch.get());
 
             Map<String, Object> response = new HashMap<>();
             response.put("token", token);
@@ -297,11 +291,11 @@ public class UserController {
 
             boolean success = userService.updatePassword(phone, changeRequest.getNewPassword());
             if (success) {
-                session.removeAttribute("codeKey");
-                session.removeAttribute(codeKey);
                 return Result.success(response, "密码修改成功");
             }
             return Result.error("123", "密码修改失败，用户不存在");
+        } catch (PasswordHasherBusyException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return Result.error("123", "密码修改失败");
@@ -400,12 +394,6 @@ public class UserController {
 
             boolean success = userService.deleteUser(phoneNum);
             if (success) {
-                // 获取用户信息用于删除Redis缓存
-                Long uid = (Long) userInfo.get("uid");
-                if (uid != null) {
-                    String redisKey = "user:" + uid;
-                    redisTemplate.delete(redisKey);
-                }
                 return Result.success(null, "账号注销成功");
             }
             return Result.error("123", "账号注销失败，账号不存在或为管理员账号");
@@ -428,13 +416,16 @@ public class UserController {
      * @throws 修改失败 code:"123"
      */
     @PostMapping("/update")
-    public Result<Map<String, Object>> updateUser(@RequestBody UpdateUserRequestDto updateRequest,
-            HttpSession session) {
+    public Result<Map<String, Object>> updateUser(@RequestBody UpdateUserRequestDto updateRequest) {
         try {
             if (updateRequest.getToken() == null || updateRequest.getToken().trim().isEmpty()) {
                 return Result.error("123", "Token不能为空");
             }
 
+            // 在加载用户之前读取纪元；本次修改递增一次纪元，新令牌使用递增后的值，
+            // 期间其他修改会让纪元更大，新令牌随之过期
+            long epoch = permissionEpoch.current(Long.valueOf(JwtUtils.getUserIdFromToken(updateRequest.getToken())));
+
             // 获取用户信息
             Map<String, Object> userInfo = userService.getUserInfoByToken(updateRequest.getToken());
             if (userInfo == null) {
@@ -470,19 +461,13 @@ public class UserController {
                     return Result.error("123", "验证码不能为空");
                 }
 
-                String codeKey = (String) session.getAttribute(updateRequest.getNewPhoneNum());
-                if (codeKey == null) {
-                    return Result.error("123", "验证码已过期或电话号码错误");
-                }
-                if (!codeKey.equals(code)) {
-                    return Result.error("123", "验证码错误");
+                String codeError = consumeVerifyCode(updateRequest.getNewPhoneNum(), code);
+                if (codeError != null) {
+                    return Result.error("123", codeError);
                 }
 
                 user.setPhonenum(updateRequest.getNewPhoneNum());
                 hasChanges = true;
-
-                // 清除验证码
-                session.removeAttribute(updateRequest.getNewPhoneNum());
             }
 
             // 修改用户名
@@ -502,14 +487,11 @@ public class UserController {
 
             user.setUpdateTime(LocalDateTime.now());
             User updatedUser = userDao.save(user);
+            // 旧token中的手机号/用户名已过期
+            permissionEpoch.bumpUser(updatedUser.getUid());
 
             // 生成新的token
-            String newToken = JwtUtils.generateToken(String.valueOf(updatedUser.getUid()));
-
-            // 更新Redis中的用户信息
-            String redisKey = "user:" + updatedUser.getUid();
-            redisTemplate.delete(redisKey); // 先删除旧的缓存
-            redisTemplate.opsForValue().set(redisKey, updatedUser, 24, TimeUnit.HOURS);
+            String newToken = JwtUtils.generateToken(updatedUser, epoch + 1);
 
             // 构建返回的用户信息
             Map<String, Object> response = new HashMap<>();
@@ -574,6 +556,70 @@ public class UserController {
         }
     }
 
+    /**
+     * @author 潘楠
+     * @date 2025-4-15
+     * @description 批量为多个用户分配角色，在一个事务中完成
+     *              @body{
+     *              token:"管理员token",
+     *              targetPhoneNums:["电话1","电话2"],
+     *              roleIds:[1,2]
+     *              }
+     * @return code"200"+data{matchedUsers,changedRows,notFound}+msg
+     * @throws 批量分配角色失败 code:"123"
+     */
+    @PostMapping("/roles/bulk-assign")
+    public Result<BulkRolesResultDto> bulkAssignRoles(@RequestBody BulkRolesRequestDto request) {
+        return bulkUpdateRoles(request, true);
+    }
+
+    /**
+     * @author 潘楠
+     * @date 2025-4-15
+     * @description 批量移除多个用户的角色，在一个事务中完成
+     *              @body{
+     *              token:"管理员token",
+     *              targetPhoneNums:["电话1","电话2"],
+     *              roleIds:[1,2]
+     *              }
+     * @return code"200"+data{matchedUsers,changedRows,notFound}+msg
+     * @throws 批量移除角色失败 code:"123"
+     */
+    @PostMapping("/roles/bulk-remove")
+    public Result<BulkRolesResultDto> bulkRemoveRoles(@RequestBody BulkRolesRequestDto request) {
+        return bulkUpdateRoles(request, false);
+    }
+
+    private Result<BulkRolesResultDto> bulkUpdateRoles(BulkRolesRequestDto request, boolean assign) {
+        String action = assign ? "分配" : "移除";
+        try {
+            if (request.getToken() == null || request.getToken().trim().isEmpty()) {
+                return Result.error("123", "Token不能为空");
+            }
+            if (request.getTargetPhoneNums() == null || request.getTargetPhoneNums().isEmpty()) {
+                return Result.error("123", "目标用户列表不能为空");
+            }
+            if (request.getRoleIds() == null || request.getRoleIds().isEmpty()) {
+                return Result.error("123", "角色ID列表不能为空");
+            }
+
+            Map<String, Object> operatorInfo = userService.getUserInfoByToken(request.getToken());
+            String operatorPhoneNum = (String) operatorInfo.get("phonenum");
+            if (operatorPhoneNum == null || operatorPhoneNum.trim().isEmpty()) {
+                return Result.error("123", "无法获取操作者电话号码");
+            }
+
+            BulkRolesResultDto result = assign
+                    ? userService.bulkAssignRoles(operatorPhoneNum, request.getTargetPhoneNums(), request.getRoleIds())
+                    : userService.bulkRemoveRoles(operatorPhoneNum, request.getTargetPhoneNums(), request.getRoleIds());
+            return Result.success(result, "批量" + action + "角色成功");
+        } catch (RuntimeException e) {
+            return Result.error("123", e.getMessage());
+        } catch (Exception e) {
+            return Result.error("123", "批量" + action + "角色失败：系统错误");
+        }
+    }
+
     /**
      * @author 潘楠
      * @date 2025-3-12
@@ -684,6 +730,140 @@ public class UserController {
         }
     }
 
+    /**
+     * @author 潘楠
+     * @date 2025-4-12
+     * @description 按uid游标分页获取用户列表，只返回用户摘要，不含密码
+     * @param token           管理员token
+     * @param cursor          上一页返回的nextCursor，第一页不传
+     * @param size            每页条数，默认50，最大500
+     * @param loginPermission 按登录权限过滤（可选）
+     * @param departmentId    按所属部门过滤（可选）
+     * @param includeRoles    是否附带角色ID和名称
+     * @return code"200"+data{users,nextCursor}+msg
+     * @throws 获取用户失败 code:"123"
+     */
+    @GetMapping("/list")
+    public Result<UserPageDto> listUsers(@RequestParam String token, @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) Integer loginPermission,
+            @RequestParam(required = false) Long departmentId,
+            @RequestParam(defaultValue = "false") boolean includeRoles) {
+        try {
+            UserPageDto page = userService.listUsers(token, cursor, size, loginPermission, departmentId,
+                    includeRoles);
+            return Result.success(page, "获取用户列表成功");
+        } catch (RuntimeException e) {
+            return Result.error("123", e.getMessage());
+        } catch (Exception e) {
+            return Result.error("123", "获取用户列表失败：系统错误");
+        }
+    }
+
+    /**
+     * @author 潘楠
+     * @date 2025-4-12
+     * @description 以NDJSON流式导出用户列表（每行一个用户摘要），与/export使用同一个导出服务，
+     *              每行总是带角色和部门（includeRoles参数不再需要），内存占用与总用户数无关
+     * @param format 固定为ndjson
+     * @return application/x-ndjson
+     * @throws 没有权限时返回403
+     */
+    @GetMapping(value = "/list", params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam String token,
+            @RequestParam(required = false) Long cursor, @RequestParam(required = false) Integer loginPermission,
+            @RequestParam(required = false) Long departmentId) {
+        // 开始前只校验一次权限，导出过程中token过期不会截断输出
+        if (!userService.isAdmin(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        StreamingResponseBody body = out -> userExportService.exportUsers(UserExportService.NDJSON, cursor,
+                loginPermission, departmentId, out);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * @author 潘楠
+     * @date 2025-4-13
+     * @description 导出全部用户（含角色和部门），边查询边写出，内存占用与用户数无关
+     * @param token  管理员token
+     * @param format csv（默认）或ndjson
+     * @return users.csv / users.ndjson 附件
+     * @throws 没有权限时返回403
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam String token,
+            @RequestParam(defaultValue = UserExportService.CSV) String format) {
+        if (!userService.isAdmin(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        boolean csv = !UserExportService.NDJSON.equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> userExportService.exportUsers(
+                csv ? UserExportService.CSV : UserExportService.NDJSON, out);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=users." + (csv ? "csv" : "ndjson"))
+                .body(body);
+    }
+
+    /**
+     * @author 潘楠
+     * @date 2025-4-14
+     * @description 批量导入用户，文件为CSV（表头phonenum,uname,password）或NDJSON，后台执行并立即返回任务ID
+     * @param token  管理员token
+     * @param file   导入文件
+     * @param format csv或ndjson，不传时按文件扩展名判断
+     * @return code"200"+data{jobId}+msg
+     * @throws 导入失败 code:"123"
+     */
+    @PostMapping("/import")
+    public Result<Map<String, Object>> importUsers(@RequestParam String token, @RequestParam MultipartFile file,
+            @RequestParam(required = false) String format) {
+        try {
+            if (!userService.isAdmin(token)) {
+                return Result.error("403", "没有导入用户的权限");
+            }
+            if (file == null || file.isEmpty()) {
+                return Result.error("123", "导入文件不能为空");
+            }
+            if (format == null) {
+                String name = file.getOriginalFilename();
+                format = name != null && name.toLowerCase().endsWith(".csv") ? "csv" : "ndjson";
+            }
+            String jobId;
+            try (InputStream content = file.getInputStream()) {
+                jobId = userImportService.submitImport(format, content);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("jobId", jobId);
+            return Result.success(response, "导入任务已提交");
+        } catch (RuntimeException e) {
+            return Result.error("123", e.getMessage());
+        } catch (Exception e) {
+            return Result.error("123", "导入失败：系统错误");
+        }
+    }
+
+    /**
+     * @author 潘楠
+     * @date 2025-4-14
+     * @description 查询批量导入任务的进度和逐行错误
+     * @param token 管理员token
+     * @param jobId 任务ID
+     * @return code"200"+data+msg
+     * @throws 任务不存在 code:"123"
+     */
+    @GetMapping("/import/{jobId}")
+    public Result<UserImportStatusDto> getImportStatus(@RequestParam String token, @PathVariable String jobId) {
+        if (!userService.isAdmin(token)) {
+            return Result.error("403", "没有查看导入任务的权限");
+        }
+        UserImportStatusDto status = userImportService.getStatus(jobId);
+        if (status == null) {
+            return Result.error("123", "导入任务不存在或已过期");
+        }
+        return Result.success(status, "获取导入任务状态成功");
+    }
+
     /**
      * @author 潘楠
      * @date 2025-3-23
@@ -738,33 +918,8 @@ public class UserController {
                 return Result.error("123", "Token不能为空");
             }
 
-            // 获取用户信息
-            Map<String, Object> userInfo = userService.getUserInfoByToken(token);
-            String phoneNum = (String) userInfo.get("phonenum");
-            if (phoneNum == null || phoneNum.trim().isEmpty()) {
-                return Result.error("123", "无法获取用户电话号码");
-            }
-
-            // 获取用户角色权限
-            UserRolePermissionDto userRolePermission = userService.getUserRolePermissionByToken(token);
-
-            // 提取权限ID
-            List<Long> permissionIds = new ArrayList<>();
-            if (userRolePermission != null && userRolePermission.getRoles() != null) {
-                for (Map<String, Object> role : userRolePermission.getRoles()) {
-                    @SuppressWarnings("unchecked")
-                    List<Map<String, Object>> permissions = (List<Map<String, Object>>) role.get("permissions");
-                    if (permissions != null) {
-                        for (Map<String, Object> permission : permissions) {
-                            // 获取权限ID
-                            Number id = (Number) permission.get("id");
-                            if (id != null) {
-                                permissionIds.add(id.longValue());
-                            }
-                        }
-                    }
-                }
-            }
+            // 从权限索引中读取用户已启用的权限ID
+            List<Long> permissionIds = userService.getUserPermissionIds(token);
 
             return Result.success(permissionIds, "获取用户权限成功");
         } catch (RuntimeException e) {
@@ -824,8 +979,9 @@ public class UserController {
             userInfo.put("updateTime", targetUser.getUpdateTime());
             userInfo.put("roles", targetUser.getRoles());
 
-            // 添加部门信息
+            // 添加部门信息；主部门是懒加载代理，按ID比较
             Set<Department> departments = targetUser.getDepartments();
+            Department primary = targetUser.getPrimaryDepartment();
             if (departments != null && !departments.isEmpty()) {
                 List<Map<String, Object>> deptList = departments.stream()
                         .filter(dept -> dept.getActive() == 1) // 只返回活跃的部门
@@ -835,7 +991,7 @@ public class UserController {
                             deptMap.put("name", dept.getName());
                             deptMap.put("description", dept.getDescription());
                             // 标记是否为主部门
-                            deptMap.put("isPrimary", dept.equals(targetUser.getPrimaryDepartment()));
+                            deptMap.put("isPrimary", primary != null && dept.getId().equals(primary.getId()));
                             return deptMap;
                         })
                         .collect(Collectors.toList());
@@ -844,12 +1000,11 @@ public class UserController {
             }
 
             // 获取主部门信息
-            Department primaryDept = targetUser.getPrimaryDepartment();
-            if (primaryDept != null && primaryDept.getActive() == 1) {
+            if (primary != null && primary.getActive() == 1) {
                 Map<String, Object> primaryDeptMap = new HashMap<>();
-                primaryDeptMap.put("id", primaryDept.getId());
-                primaryDeptMap.put("name", primaryDept.getName());
-                primaryDeptMap.put("description", primaryDept.getDescription());
+                primaryDeptMap.put("id", primary.getId());
+                primaryDeptMap.put("name", primary.getName());
+                primaryDeptMap.put("description", primary.getDescription());
                 userInfo.put("primaryDepartment", primaryDeptMap);
             }
 
@@ -859,4 +1014,31 @@ public class UserController {
             return Result.error("123", "获取用户信息失败：" + e.getMessage());
         }
     }
+
+    // 校验并消费验证码，通过返回null，否则返回错误提示
+    private String consumeVerifyCode(String phone, String code) {
+        switch (verificationCodeStore.consume(phone, code)) {
+            case OK:
+                return null;
+            case MISMATCH:
+                return "验证码错误";
+            case LOCKED:
+                return "验证码错误次数过多，请稍后再试";
+            default:
+                return "验证码已过期或电话号码错误";
+        }
+    }
+
+    /**
+     * @author 潘楠
+     * @date 2025-4-9
+     * @description 密码加密线程池已满时快速返回429，提示客户端稍后重试
+     * @return code"429"+msg
+     */
+    @ExceptionHandler(PasswordHasherBusyException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Result<Void> handlePasswordHasherBusy(PasswordHasherBusyException e, HttpServletResponse response) {
+        response.setHeader("Retry-After", "1");
+        return Result.error("429", e.getMessage());
+    }
 }
@@ -1,7 +1,10 @@
 package com.springboot.logindemo.dao;
 
 import com.springboot.logindemo.domain.Authentication;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -28,4 +31,27 @@ public interface AuthenticationDao extends JpaRepository<Authentication, Long> {
      * @return 认证信息列表
      */
     List<Authentication> findByUserIdAndAuthStatus(Long userId, Integer authStatus);
+
+    /**
+     * 一次查询取出用户最新的认证记录并连接对应的详情表，按(user_id, create_time)索引倒序只读一行
+     *
+     * @param userId 用户ID
+     * @return 最新认证记录，没有时返回null
+     */
+    default LatestAuthentication findLatestByUserId(Long userId) {
+        List<LatestAuthentication> latest = findLatestByUserId(userId, Limit.of(1));
+        return latest.isEmpty() ? null : latest.get(0);
+    }
+
+    @Query("SELECT a.id AS authId, a.authType AS authType, a.authStatus AS authStatus, a.createTime AS createTime, "
+            + "COALESCE(np.id, ib.id, e.id) AS detailId, COALESCE(np.name, ib.name, e.name) AS name, "
+            + "np.idCard AS idCard, np.phone AS phone, np.promiseFile AS promiseFile, np.delegateFile AS delegateFile, "
+            + "COALESCE(ib.taxNo, e.taxNo) AS taxNo, COALESCE(ib.address, e.address) AS address, "
+            + "COALESCE(ib.licenseFile, e.licenseFile) AS licenseFile "
+            + "FROM Authentication a "
+            + "LEFT JOIN NaturalPerson np ON a.authType = 'natural' AND np.authId = a.id "
+            + "LEFT JOIN IndividualBusiness ib ON a.authType = 'individual' AND ib.authId = a.id "
+            + "LEFT JOIN Enterprise e ON a.authType = 'enterprise' AND e.authId = a.id "
+            + "WHERE a.userId = :userId ORDER BY a.createTime DESC, a.id DESC")
+    List<LatestAuthentication> findLatestByUserId(@Param("userId") Long userId, Limit limit);
 }
\ No newline at end of file
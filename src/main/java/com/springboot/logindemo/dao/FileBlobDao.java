@@ -0,0 +1,80 @@
+package com.springboot.logindemo.dao;
+
+import com.springboot.logindemo.domain.FileBlob;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author 上传文件内容DAO，引用计数的增减和孤儿清理都用条件语句完成，不先读后写
+ */
+@Repository
+public interface FileBlobDao extends JpaRepository<FileBlob, String> {
+
+    /**
+     * 调整引用计数并刷新更新时间
+     *
+     * @param sha256 文件内容的SHA-256
+     * @param delta  增量，引用时为1
+     * @param now    当前时间
+     * @return 更新的行数，文件不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE FileBlob b SET b.refCount = b.refCount + :delta, b.updateTime = :now WHERE b.sha256 = :sha256")
+    int adjustRefCount(@Param("sha256") String sha256, @Param("delta") int delta, @Param("now") LocalDateTime now);
+
+    /**
+     * 登记上传的内容；已有记录时只刷新更新时间，重新计算保留期。
+     * 单条语句完成，其他节点并发上传相同内容时不会因主键冲突失败
+     *
+     * @param sha256 文件内容的SHA-256
+     * @param size   文件大小
+     * @param now    当前时间
+     * @return 受影响的行数
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "file_blobs"))
+    @Query(value = "INSERT INTO file_blobs (sha256, size_bytes, ref_count, create_time, update_time) "
+            + "VALUES (:sha256, :size, 0, :now, :now) ON DUPLICATE KEY UPDATE update_time = :now", nativeQuery = true)
+    int upsert(@Param("sha256") String sha256, @Param("size") long size, @Param("now") LocalDateTime now);
+
+    // 未被引用且在截止时间之前没有再上传或引用过的内容
+    @Query("SELECT b.sha256 FROM FileBlob b WHERE b.refCount <= 0 AND b.updateTime < :cutoff ORDER BY b.updateTime")
+    List<String> findOrphans(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    // 仍满足孤儿条件时才删除，期间被重新上传或引用的记录不受影响
+    @Modifying
+    @Query("DELETE FROM FileBlob b WHERE b.sha256 = :sha256 AND b.refCount <= 0 AND b.updateTime < :cutoff")
+    int deleteIfOrphan(@Param("sha256") String sha256, @Param("cutoff") LocalDateTime cutoff);
+
+    // 把引用计数校正为认证详情表中的实际引用数
+    @Modifying
+    @Query("UPDATE FileBlob b SET b.refCount = :refCount WHERE b.sha256 = :sha256")
+    int resetRefCount(@Param("sha256") String sha256, @Param("refCount") int refCount);
+
+    // 记录生成的缩略图和预览图
+    @Modifying
+    @Query("UPDATE FileBlob b SET b.thumbnailUrl = :thumbnailUrl, b.previewUrl = :previewUrl WHERE b.sha256 = :sha256")
+    int recordDerivatives(@Param("sha256") String sha256, @Param("thumbnailUrl") String thumbnailUrl,
+            @Param("previewUrl") String previewUrl);
+
+    /**
+     * 统计认证详情表中文件路径包含该内容摘要的行数，清理前用来复核引用计数
+     *
+     * @param pattern LIKE模式，形如%摘要%
+     * @return 引用数
+     */
+    @Query(value = "SELECT (SELECT COUNT(*) FROM natural_person WHERE promise_file LIKE :pattern OR delegate_file LIKE :pattern)"
+            + " + (SELECT COUNT(*) FROM individual_business WHERE license_file LIKE :pattern)"
+            + " + (SELECT COUNT(*) FROM enterprise WHERE license_file LIKE :pattern)", nativeQuery = true)
+    long countReferences(@Param("pattern") String pattern);
+}
@@ -0,0 +1,36 @@
+package com.springboot.logindemo.dao;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author 用户最新一条认证记录及其详情的投影，详情列按认证类型取自对应的详情表，没有详情时为空
+ */
+public interface LatestAuthentication {
+
+    Long getAuthId();
+
+    String getAuthType();
+
+    Integer getAuthStatus();
+
+    LocalDateTime getCreateTime();
+
+    // 详情表主键，为空表示没有找到详情
+    Long getDetailId();
+
+    String getName();
+
+    String getIdCard();
+
+    String getPhone();
+
+    String getPromiseFile();
+
+    String getDelegateFile();
+
+    String getTaxNo();
+
+    String getAddress();
+
+    String getLicenseFile();
+}
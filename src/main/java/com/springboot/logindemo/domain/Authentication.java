@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
  * @author 认证信息实体类
  */
 @Entity
-@Table(name = "authentication")
+@Table(name = "authentication", indexes = @Index(name = "idx_authentication_user_id_create_time", columnList = "user_id, create_time"))
 @Data
 public class Authentication {
     @Id
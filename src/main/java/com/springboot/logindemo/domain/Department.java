@@ -7,12 +7,18 @@
 package com.springboot.logindemo.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
+@Cacheable // 部门是读多写少的参考数据，放入二级缓存
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "departments")
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" }) // 用户的主部门是懒加载代理，同一会话中查询部门列表时可能返回代理对象
 public class Department {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -32,6 +38,7 @@ public class Department {
     @Column(nullable = false, columnDefinition = "TINYINT DEFAULT 1")
     private Integer active = 1;
 
+    // 反向关联由Role和User维护，对方修改时Hibernate不会失效这一侧的集合缓存，因此不放入二级缓存
     @JsonIgnore
     @ManyToMany(mappedBy = "departments")
     private Set<Role> roles;
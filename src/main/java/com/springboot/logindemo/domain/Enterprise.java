@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
  * @author 企业法人认证信息实体类
  */
 @Entity
-@Table(name = "enterprise")
+@Table(name = "enterprise", indexes = @Index(name = "idx_enterprise_auth_id", columnList = "auth_id"))
 @Data
 public class Enterprise {
     @Id
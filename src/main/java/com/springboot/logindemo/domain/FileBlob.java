@@ -0,0 +1,51 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 按内容寻址的上传文件
+ */
+package com.springboot.logindemo.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一份上传文件内容。相同内容只存一份，refCount记录认证详情表中引用它的次数，
+ * 为0且超过保留期的记录由BlobCompactor连同文件一起清除
+ */
+@Entity
+@Table(name = "file_blobs", indexes = @Index(name = "idx_file_blobs_ref_count_update_time", columnList = "ref_count, update_time"))
+@Data
+public class FileBlob {
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+
+    // 后台生成的缩略图和预览图，见ThumbnailPipeline
+    @Column(name = "thumbnail_url")
+    private String thumbnailUrl;
+
+    @Column(name = "preview_url")
+    private String previewUrl;
+
+    @Column(name = "create_time")
+    private LocalDateTime createTime;
+
+    // 最后一次上传或引用变化的时间，保留期从这里算起
+    @Column(name = "update_time")
+    private LocalDateTime updateTime;
+
+    @PrePersist
+    protected void onCreate() {
+        createTime = LocalDateTime.now();
+        updateTime = createTime;
+    }
+}
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
  * @author 个体工商户认证信息实体类
  */
 @Entity
-@Table(name = "individual_business")
+@Table(name = "individual_business", indexes = @Index(name = "idx_individual_business_auth_id", columnList = "auth_id"))
 @Data
 public class IndividualBusiness {
     @Id
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
  * @author 自然人认证信息实体类
  */
 @Entity
-@Table(name = "natural_person")
+@Table(name = "natural_person", indexes = @Index(name = "idx_natural_person_auth_id", columnList = "auth_id"))
 @Data
 public class NaturalPerson {
     @Id
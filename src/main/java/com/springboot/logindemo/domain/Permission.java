@@ -7,9 +7,13 @@
 package com.springboot.logindemo.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 @Entity
+@Cacheable // 权限是读多写少的参考数据，放入二级缓存
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "permissions")
 public class Permission {
     @Id
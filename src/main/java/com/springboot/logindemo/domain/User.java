@@ -9,18 +9,33 @@ package com.springboot.logindemo.domain;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import java.util.Set;
 
-@Table(name = "user") // 说明此实体类对应数据库user表
+// 按用例声明的加载范围，DAO方法通过@EntityGraph选用；未指定时角色等关联都是懒加载
+@NamedEntityGraph(name = User.WITH_ROLES, attributeNodes = @NamedAttributeNode("roles"))
+@NamedEntityGraph(name = User.WITH_ROLES_AND_PERMISSIONS,
+        attributeNodes = @NamedAttributeNode(value = "roles", subgraph = "permissions"),
+        subgraphs = @NamedSubgraph(name = "permissions", attributeNodes = @NamedAttributeNode("permissions")))
+@NamedEntityGraph(name = User.WITH_DEPARTMENTS, attributeNodes = { @NamedAttributeNode("departments"),
+        @NamedAttributeNode("primaryDepartment") })
+@Table(name = "user", indexes = { // 说明此实体类对应数据库user表
+        @Index(name = "uk_user_phonenum", columnList = "phonenum", unique = true),
+        @Index(name = "uk_user_uname", columnList = "uname", unique = true) })
 @Entity // 说明此类是个实体类
 public class User {
+    public static final String WITH_ROLES = "User.withRoles";
+    public static final String WITH_ROLES_AND_PERMISSIONS = "User.withRolesAndPermissions";
+    public static final String WITH_DEPARTMENTS = "User.withDepartments";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long uid;
 
     private String uname;
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY) // 密码哈希不出现在任何接口响应中
     private String password;
     private String phonenum;
     private Integer loginPermission = 1; // 默认登录权限为1
@@ -35,7 +50,7 @@ public class User {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
     private LocalDateTime updateTime; // 用户信息更新时间
 
-    @ManyToMany(fetch = FetchType.EAGER, cascade = { CascadeType.PERSIST, CascadeType.MERGE })
+    @ManyToMany(cascade = { CascadeType.PERSIST, CascadeType.MERGE })
     @JoinTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"), inverseJoinColumns = @JoinColumn(name = "role_id"))
     private Set<Role> roles;
 
@@ -45,7 +60,7 @@ public class User {
     private Set<Department> departments;
 
     @JsonIgnore
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "primary_department_id")
     private Department primaryDepartment;
 
@@ -106,6 +121,10 @@ public class User {
         return createTime;
     }
 
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+
     public LocalDateTime getUpdateTime() {
         return updateTime;
     }
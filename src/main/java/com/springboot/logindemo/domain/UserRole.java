@@ -11,7 +11,8 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "user_roles")
+@Table(name = "user_roles", uniqueConstraints = @UniqueConstraint(name = "uk_user_roles_user_role", columnNames = {
+        "user_id", "role_id" }))
 public class UserRole {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -58,4 +59,4 @@ public class UserRole {
     public void setCreateTime(LocalDateTime createTime) {
         this.createTime = createTime;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-15
+ * @description 批量为用户分配或移除角色
+ */
+package com.springboot.logindemo.dto;
+
+import lombok.Data;
+
+import java.util.Set;
+
+@Data
+public class BulkRolesRequestDto {
+    private String token;
+    private Set<String> targetPhoneNums;
+    private Set<Long> roleIds;
+}
@@ -0,0 +1,23 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-15
+ * @description 批量角色操作结果
+ */
+package com.springboot.logindemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * matchedUsers为找到的用户数，changedRows为实际新增或删除的关联行数，notFound为不存在的手机号
+ */
+@Data
+@AllArgsConstructor
+public class BulkRolesResultDto {
+    private int matchedUsers;
+    private int changedRows;
+    private List<String> notFound;
+}
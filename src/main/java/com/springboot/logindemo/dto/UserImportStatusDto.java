@@ -0,0 +1,51 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-14
+ * @description 批量导入任务状态
+ */
+package com.springboot.logindemo.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 批量导入的进度：各阶段处理到的行数以及逐行错误
+ */
+@Data
+public class UserImportStatusDto {
+    private String jobId;
+    // PENDING, PARSING, CHECKING, HASHING, INSERTING, DONE, FAILED
+    private String state;
+    private int total;
+    private int hashed;
+    private int imported;
+    private int failed;
+    private String message;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private LocalDateTime startTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private LocalDateTime endTime;
+
+    private List<RowError> errors;
+
+    /**
+     * 某一行导入失败的原因，line为文件中的行号（CSV含表头时从2开始）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private int line;
+        private String phonenum;
+        private String uname;
+        private String message;
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-12
+ * @description 用户列表分页结果
+ */
+package com.springboot.logindemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 按uid升序的一页用户。nextCursor为本页最后一个uid，作为下一页的cursor参数传回；
+ * 没有更多数据时为null
+ */
+@Data
+@AllArgsConstructor
+public class UserPageDto {
+    private List<UserSummaryDto> users;
+    private Long nextCursor;
+}
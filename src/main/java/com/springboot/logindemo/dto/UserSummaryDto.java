@@ -0,0 +1,54 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-12
+ * @description 用户列表中的用户摘要
+ */
+package com.springboot.logindemo.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 用户列表只查询用户表本身的列，不含密码；请求角色时才填充roleIds和roleNames，导出时还会填充部门
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserSummaryDto {
+    private Long uid;
+    private String uname;
+    private String phonenum;
+    private Integer loginPermission;
+    private Integer adminPermission;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private LocalDateTime createTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private LocalDateTime updateTime;
+
+    private List<Long> roleIds;
+    private List<String> roleNames;
+
+    // 仅导出时填充
+    private List<Long> departmentIds;
+    private List<String> departmentNames;
+
+    // JPQL构造器表达式使用
+    public UserSummaryDto(Long uid, String uname, String phonenum, Integer loginPermission,
+            Integer adminPermission, LocalDateTime createTime, LocalDateTime updateTime) {
+        this.uid = uid;
+        this.uname = uname;
+        this.phonenum = phonenum;
+        this.loginPermission = loginPermission;
+        this.adminPermission = adminPermission;
+        this.createTime = createTime;
+        this.updateTime = updateTime;
+    }
+}
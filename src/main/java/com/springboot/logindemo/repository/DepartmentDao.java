@@ -7,23 +7,37 @@
 package com.springboot.logindemo.repository;
 
 import com.springboot.logindemo.domain.Department;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Set;
 
 @Repository
 public interface DepartmentDao extends JpaRepository<Department, Long> {
+    // 查询结果放入查询缓存，部门表被修改时由Hibernate自动失效
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Override
+    List<Department> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Department findByName(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Department> findByIdIn(Set<Long> ids);
 
     // 查找活跃部门
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Department> findByActive(Integer active);
 
     // 根据ID集合和活跃状态查找部门
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Department> findByIdInAndActive(Set<Long> ids, Integer active);
 
     // 根据名称和活跃状态查找部门
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Department findByNameAndActive(String name, Integer active);
 }
\ No newline at end of file
@@ -7,21 +7,34 @@
 package com.springboot.logindemo.repository;
 
 import com.springboot.logindemo.domain.Permission;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Set;
 
 @Repository
 public interface PermissionDao extends JpaRepository<Permission, Long> {
+    // 查询结果放入查询缓存，权限表被修改时由Hibernate自动失效
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Override
+    List<Permission> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Permission> findByIdIn(Set<Long> ids);
 
     // 查找活跃权限
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Permission> findByActive(Integer active);
 
     // 根据ID集合和活跃状态查找权限
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Permission> findByIdInAndActive(Set<Long> ids, Integer active);
 
     // 根据名称和活跃状态查找权限
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Permission findByNameAndActive(String name, Integer active);
 }
\ No newline at end of file
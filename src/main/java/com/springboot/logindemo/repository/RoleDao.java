@@ -7,22 +7,47 @@
 package com.springboot.logindemo.repository;
 
 import com.springboot.logindemo.domain.Role;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
 import java.util.Set;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface RoleDao extends JpaRepository<Role, Long> {
+    // 查询结果放入查询缓存，角色表被修改时由Hibernate自动失效
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Override
+    List<Role> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Role> findByIdIn(Set<Long> roleIds);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Role findByName(String name);
 
     // 查找活跃角色
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Role> findByActive(Integer active);
 
     // 根据ID集合和活跃状态查找角色
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Role> findByIdInAndActive(Set<Long> roleIds, Integer active);
 
+    // 只查询存在的角色ID，不加载角色实体
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT r.id FROM Role r WHERE r.id IN :roleIds")
+    Set<Long> findExistingIds(@Param("roleIds") Set<Long> roleIds);
+
+    // 只查询角色ID和名称，用于识别管理员角色
+    @Query("SELECT r.id, r.name FROM Role r")
+    List<Object[]> findIdAndNames();
+
     // 根据名称和活跃状态查找角色
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Role findByNameAndActive(String name, Integer active);
-}
\ No newline at end of file
+}
\ No newline at end of file
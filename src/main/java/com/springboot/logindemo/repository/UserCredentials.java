@@ -0,0 +1,18 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 登录校验所需的用户凭证投影
+ */
+package com.springboot.logindemo.repository;
+
+/**
+ * 只包含校验密码所需的列，查询时不加载角色和权限
+ */
+public interface UserCredentials {
+    Long getUid();
+
+    String getPassword();
+
+    Integer getLoginPermission();
+}
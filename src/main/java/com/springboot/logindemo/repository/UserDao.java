@@ -7,10 +7,18 @@
 package com.springboot.logindemo.repository;
 
 import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.dto.UserSummaryDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface UserDao extends JpaRepository<User, Long> {
@@ -22,6 +30,83 @@ public interface UserDao extends JpaRepository<User, Long> {
 
     User findByPhonenumAndPassword(String phonenum, String password);
 
-    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.departments LEFT JOIN FETCH u.roles")
-    List<User> findAllWithDepartmentsAndRoles();
+    // 一次查询按手机号或用户名查找，手机号匹配的排在前面
+    @Query("SELECT u FROM User u WHERE u.phonenum = :account OR u.uname = :account "
+            + "ORDER BY CASE WHEN u.phonenum = :account THEN 0 ELSE 1 END")
+    List<User> findByAccount(@Param("account") String account);
+
+    // 以下方法按用例通过实体图一次查询加载所需的关联，其余关联保持懒加载
+
+    // 签发令牌只需要角色ID
+    @EntityGraph(User.WITH_ROLES)
+    Optional<User> findWithRolesByUid(Long uid);
+
+    // 用户缓存快照和权限索引需要角色及其权限
+    @EntityGraph(User.WITH_ROLES_AND_PERMISSIONS)
+    Optional<User> findWithPermissionsByUid(Long uid);
+
+    @EntityGraph(User.WITH_ROLES_AND_PERMISSIONS)
+    User findWithPermissionsByPhonenum(String phonenum);
+
+    @EntityGraph(User.WITH_ROLES_AND_PERMISSIONS)
+    User findWithPermissionsByUname(String uname);
+
+    @EntityGraph(User.WITH_ROLES_AND_PERMISSIONS)
+    @Query("SELECT u FROM User u WHERE u.phonenum = :account OR u.uname = :account "
+            + "ORDER BY CASE WHEN u.phonenum = :account THEN 0 ELSE 1 END")
+    List<User> findWithPermissionsByAccount(@Param("account") String account);
+
+    // 部门管理需要用户的部门和主部门
+    @EntityGraph(User.WITH_DEPARTMENTS)
+    @Query("SELECT u FROM User u WHERE u.phonenum = :account OR u.uname = :account "
+            + "ORDER BY CASE WHEN u.phonenum = :account THEN 0 ELSE 1 END")
+    List<User> findWithDepartmentsByAccount(@Param("account") String account);
+
+    // 只查询登录凭证，不加载角色权限
+    @Query("SELECT u.uid AS uid, u.password AS password, u.loginPermission AS loginPermission FROM User u "
+            + "WHERE u.phonenum = :account OR u.uname = :account "
+            + "ORDER BY CASE WHEN u.phonenum = :account THEN 0 ELSE 1 END")
+    List<UserCredentials> findCredentialsByAccount(@Param("account") String account);
+
+    // 只查询uid，不把用户实体放入持久化上下文
+    @Query("SELECT u.uid FROM User u WHERE u.phonenum = :phonenum")
+    Long findUidByPhonenum(@Param("phonenum") String phonenum);
+
+    // 登录时按新的加密强度重新加密密码，仅在密码未被并发修改时更新
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.uid = :uid AND u.password = :oldPassword")
+    int updatePasswordHash(@Param("uid") Long uid, @Param("oldPassword") String oldPassword,
+            @Param("newPassword") String newPassword);
+
+    // 按uid游标分页（WHERE uid > cursor ORDER BY uid），只查询摘要列，可按登录权限和部门过滤
+    @Query("SELECT new com.springboot.logindemo.dto.UserSummaryDto(u.uid, u.uname, u.phonenum, u.loginPermission, "
+            + "u.adminPermission, u.createTime, u.updateTime) FROM User u "
+            + "WHERE u.uid > :cursor "
+            + "AND (:loginPermission IS NULL OR u.loginPermission = :loginPermission) "
+            + "AND (:departmentId IS NULL OR EXISTS (SELECT 1 FROM User du JOIN du.departments d "
+            + "WHERE du.uid = u.uid AND d.id = :departmentId)) "
+            + "ORDER BY u.uid")
+    List<UserSummaryDto> findSummariesAfter(@Param("cursor") long cursor,
+            @Param("loginPermission") Integer loginPermission, @Param("departmentId") Long departmentId,
+            Pageable pageable);
+
+    // 按手机号批量查询uid：uid、手机号
+    @Query("SELECT u.uid, u.phonenum FROM User u WHERE u.phonenum IN :phonenums")
+    List<Object[]> findUidsByPhonenums(@Param("phonenums") Collection<String> phonenums);
+
+    // 批量导入时查询已存在的手机号和用户名
+    @Query("SELECT u.phonenum FROM User u WHERE u.phonenum IN :phonenums")
+    List<String> findExistingPhonenums(@Param("phonenums") Collection<String> phonenums);
+
+    @Query("SELECT u.uname FROM User u WHERE u.uname IN :unames")
+    List<String> findExistingUnames(@Param("unames") Collection<String> unames);
+
+    // 一次查询一页用户的角色：uid、角色ID、角色名
+    @Query("SELECT u.uid, r.id, r.name FROM User u JOIN u.roles r WHERE u.uid IN :uids")
+    List<Object[]> findRoleSummaries(@Param("uids") List<Long> uids);
+
+    // 一次查询一批用户的部门：uid、部门ID、部门名
+    @Query("SELECT u.uid, d.id, d.name FROM User u JOIN u.departments d WHERE u.uid IN :uids")
+    List<Object[]> findDepartmentSummaries(@Param("uids") List<Long> uids);
 }
@@ -0,0 +1,41 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-15
+ * @description 用户角色关联表
+ */
+package com.springboot.logindemo.repository;
+
+import com.springboot.logindemo.domain.UserRole;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+/**
+ * 直接按集合写user_roles，不加载用户和角色实体。调用方负责清除用户缓存和权限索引。
+ * 原生语句声明只影响user_roles，避免Hibernate把整个二级缓存清空
+ */
+@Repository
+public interface UserRoleDao extends JpaRepository<UserRole, Long> {
+
+    // 为一组用户添加一组角色，已有的关联由唯一索引uk_user_roles_user_role忽略
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_roles"))
+    @Query(value = "INSERT IGNORE INTO user_roles (user_id, role_id) "
+            + "SELECT u.uid, r.id FROM user u JOIN roles r ON r.id IN (:roleIds) WHERE u.uid IN (:uids)",
+            nativeQuery = true)
+    int insertIgnore(@Param("uids") Collection<Long> uids, @Param("roleIds") Collection<Long> roleIds);
+
+    // 移除一组用户的一组角色
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_roles"))
+    @Query(value = "DELETE FROM user_roles WHERE user_id IN (:uids) AND role_id IN (:roleIds)", nativeQuery = true)
+    int deleteByUsersAndRoles(@Param("uids") Collection<Long> uids, @Param("roleIds") Collection<Long> roleIds);
+}
@@ -0,0 +1,136 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 管理员权限校验（缓存管理员角色ID集合）
+ */
+package com.springboot.logindemo.security;
+
+import com.springboot.logindemo.cache.UserCache;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.repository.RoleDao;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 名称为"admin"或包含"admin"/"管理员"的角色视为管理员角色。
+ * 管理员角色ID集合只查询一次角色表后缓存，角色新增、禁用或启用时失效；
+ * 校验时从用户缓存只取操作者的uid，角色ID从权限索引读取（角色变化在提交后即失效，不受Redis中用户快照的影响），
+ * 逐个在集合中查找，不再按角色访问数据库。
+ */
+@Component
+public class AdminAuthorization {
+
+    @Resource
+    private RoleDao roleDao;
+
+    @Resource
+    private UserCache userCache;
+
+    @Resource
+    private PermissionIndex permissionIndex;
+
+    private final long ttlNanos;
+
+    private volatile Snapshot snapshot;
+
+    // 每次失效加一，加载期间发生失效时不发布加载结果
+    private final AtomicLong generation = new AtomicLong();
+
+    public AdminAuthorization(@Value("${admin.roles.cache-seconds:60}") long ttlSeconds) {
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * 校验操作者是否拥有管理员角色，不满足时抛出异常
+     *
+     * @param adminPhoneNum 操作者手机号或用户名
+     * @throws RuntimeException 用户不存在、没有任何角色或无管理员权限
+     */
+    public void validateAdmin(String adminPhoneNum) {
+        User admin = adminPhoneNum == null ? null : userCache.getByAccount(adminPhoneNum);
+        if (admin == null) {
+            throw new RuntimeException("用户不存在");
+        }
+        List<Long> roleIds = permissionIndex.getRoleIds(admin.getUid());
+        if (roleIds.isEmpty()) {
+            throw new RuntimeException("用户没有任何角色");
+        }
+        if (!containsAdminRole(roleIds)) {
+            throw new RuntimeException("无管理员权限");
+        }
+    }
+
+    /**
+     * 判断一组角色中是否含有管理员角色
+     *
+     * @param roleIds 角色ID
+     * @return 含有管理员角色返回true
+     */
+    public boolean containsAdminRole(Collection<Long> roleIds) {
+        Set<Long> adminRoleIds = adminRoleIds();
+        for (Long roleId : roleIds) {
+            if (adminRoleIds.contains(roleId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 角色被创建、禁用或启用后调用，在事务提交后丢弃缓存的管理员角色ID
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        } else {
+            clear();
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    Set<Long> adminRoleIds() {
+        Snapshot current = snapshot;
+        if (current == null || System.nanoTime() - current.loadedAt > ttlNanos) {
+            long expected = generation.get();
+            current = new Snapshot(load(), System.nanoTime());
+            if (generation.get() == expected) {
+                snapshot = current;
+            }
+        }
+        return current.roleIds;
+    }
+
+    private Set<Long> load() {
+        Set<Long> roleIds = new HashSet<>();
+        for (Object[] row : roleDao.findIdAndNames()) {
+            if (isAdminRoleName((String) row[1])) {
+                roleIds.add((Long) row[0]);
+            }
+        }
+        return Set.copyOf(roleIds);
+    }
+
+    static boolean isAdminRoleName(String name) {
+        return name != null && ("admin".equalsIgnoreCase(name) || name.contains("admin") || name.contains("管理员"));
+    }
+
+    private record Snapshot(Set<Long> roleIds, long loadedAt) {
+    }
+}
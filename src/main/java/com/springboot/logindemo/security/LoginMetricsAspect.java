@@ -0,0 +1,72 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 登录指标切面
+ */
+package com.springboot.logindemo.security;
+
+import com.springboot.logindemo.utils.Result;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按登录方式（password密码 / otp短信验证码）和结果记录登录接口的次数与耗时，指标名auth.login。
+ * 接口出错时也返回HTTP 200，因此结果由返回的Result.code判断：
+ * 200为success，403为forbidden（无管理员权限），其他为failure；加密线程池繁忙被拒绝时为busy。
+ */
+@Aspect
+@Component
+public class LoginMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public LoginMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* com.springboot.logindemo.controller.UserController.loginController(..))")
+    public Object timePasswordLogin(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "password");
+    }
+
+    @Around("execution(* com.springboot.logindemo.controller.UserController.login(..))")
+    public Object timeOtpLogin(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "otp");
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String method) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Object result = joinPoint.proceed();
+            outcome = outcomeOf(result);
+            return result;
+        } catch (PasswordHasherBusyException e) {
+            outcome = "busy";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("auth.login")
+                    .description("登录接口耗时")
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private static String outcomeOf(Object result) {
+        if (!(result instanceof Result<?> response)) {
+            return "failure";
+        }
+        if ("200".equals(response.getCode())) {
+            return "success";
+        }
+        return "403".equals(response.getCode()) ? "forbidden" : "failure";
+    }
+}
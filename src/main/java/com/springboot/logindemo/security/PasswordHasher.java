@@ -0,0 +1,199 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-9
+ * @description 专用线程池上的BCrypt密码加密与校验
+ */
+package com.springboot.logindemo.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * BCrypt的计算全部在固定大小的线程池中进行，请求线程只等待结果，
+ * 登录高峰时不会占满Tomcat线程而拖慢其他接口。
+ * 等待队列有上限，队列已满时立即抛出PasswordHasherBusyException，由接口返回429。
+ * 已存密码的加密强度与当前配置不一致时，登录成功后在后台按新强度重新加密。
+ * 作为MeterBinder注册到Micrometer：password.hash按加密强度记录耗时，另有排队数、执行数和拒绝数。
+ */
+@Component
+public class PasswordHasher implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private final BCryptPasswordEncoder encoder;
+
+    private final int strength;
+
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder rejected = new LongAdder();
+
+    // 加密强度 -> password.hash计时器，绑定到MeterRegistry后才创建
+    private final Map<Integer, Timer> timers = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    public PasswordHasher(BCryptPasswordEncoder encoder,
+            @Value("${password.bcrypt.strength:10}") int strength,
+            @Value("${password.hash.threads:0}") int threads,
+            @Value("${password.hash.queue-capacity:64}") int queueCapacity) {
+        this.encoder = encoder;
+        this.strength = strength;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 使用当前配置的强度加密密码
+     *
+     * @param rawPassword 明文密码
+     * @return 加密后的密码
+     */
+    public String encode(String rawPassword) {
+        return call(strength, () -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * 校验密码
+     *
+     * @param rawPassword     明文密码
+     * @param encodedPassword 已存的加密密码
+     * @return 匹配返回true
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        return call(costOf(encodedPassword), () -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    // 已存密码的加密强度与当前配置不同
+    public boolean needsRehash(String encodedPassword) {
+        int cost = costOf(encodedPassword);
+        return cost > 0 && cost != strength;
+    }
+
+    /**
+     * 在后台按当前强度重新加密密码。线程池繁忙时直接放弃，下次登录再试
+     *
+     * @param rawPassword 已校验通过的明文密码
+     * @param store       保存新密码
+     */
+    public void rehashAsync(String rawPassword, Consumer<String> store) {
+        try {
+            executor.execute(() -> {
+                try {
+                    store.accept(timed(strength, () -> encoder.encode(rawPassword)));
+                } catch (Exception e) {
+                    logger.warn("重新加密密码失败: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("密码加密线程池繁忙，跳过重新加密");
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("password.hash.queued", executor, e -> e.getQueue().size())
+                .description("等待BCrypt线程池的任务数").register(registry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("正在计算BCrypt的线程数").register(registry);
+        FunctionCounter.builder("password.hash.rejected", rejected, LongAdder::sum)
+                .description("线程池已满被拒绝的加密/校验请求数").register(registry);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T call(int cost, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timed(cost, task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHasherBusyException();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("密码校验被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("密码校验失败：" + cause.getMessage(), cause);
+        }
+    }
+
+    private <T> T timed(int cost, Callable<T> task) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            MeterRegistry registry = meterRegistry;
+            if (registry != null) {
+                timers.computeIfAbsent(cost, c -> Timer.builder("password.hash")
+                        .description("BCrypt加密/校验耗时")
+                        .tag("cost", String.valueOf(c))
+                        .register(registry)).record(elapsed, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    // 从$2a$10$...格式中取出加密强度，无法识别时返回0
+    private static int costOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return 0;
+        }
+        int end = encodedPassword.indexOf('$', 1);
+        if (end < 0 || end + 3 > encodedPassword.length()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(end + 1, end + 3));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-9
+ * @description 密码加密线程池已满
+ */
+package com.springboot.logindemo.security;
+
+/**
+ * 密码加密/校验的等待队列已满时抛出，接口应直接返回429，让客户端稍后重试
+ */
+public class PasswordHasherBusyException extends RuntimeException {
+
+    public PasswordHasherBusyException() {
+        super("登录请求过多，请稍后再试");
+    }
+}
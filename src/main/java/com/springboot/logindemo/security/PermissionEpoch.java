@@ -0,0 +1,175 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-3
+ * @description 令牌声明的权限纪元
+ */
+package com.springboot.logindemo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springboot.logindemo.cache.UserCache;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * 每个用户的纪元是Redis中的计数器（user:epoch:{uid}，不存在时为0），所有节点共享且重启后仍然有效。
+ * 令牌签发时写入该用户当前的纪元，用户的角色、登录权限等发生变化并提交后递增计数器，
+ * 令牌中的纪元低于当前纪元即视为过期，需要回源数据库。
+ * 本节点按用户缓存读到的纪元，递增后经用户缓存的Redis频道通知其他节点清除；消息丢失时最多滞后本地过期时间。
+ * 读取Redis失败时不认为任何令牌有效。
+ */
+@Component
+public class PermissionEpoch implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionEpoch.class);
+
+    private static final String EPOCH_KEY = "user:epoch:";
+
+    // 无法读取纪元时签发的值，低于任何有效纪元
+    private static final long UNKNOWN = -1;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 用户ID -> 最近读到的纪元
+    private final Cache<Long, Long> epochs;
+
+    public PermissionEpoch(@Value("${permission.epoch.local.max-size:10000}") long maxSize,
+            @Value("${permission.epoch.local.ttl-seconds:10}") long ttlSeconds) {
+        this.epochs = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * 签发令牌时使用的纪元
+     *
+     * @param uid 用户ID
+     * @return 用户当前的纪元，读取失败时返回一个永远过期的值
+     */
+    public long current(Long uid) {
+        Long epoch = epochs.getIfPresent(uid);
+        if (epoch != null) {
+            return epoch;
+        }
+        try {
+            String value = stringRedisTemplate.opsForValue().get(EPOCH_KEY + uid);
+            epoch = value == null ? 0L : Long.parseLong(value);
+        } catch (Exception e) {
+            logger.warn("读取用户{}的权限纪元失败: {}", uid, e.getMessage());
+            return UNKNOWN;
+        }
+        epochs.put(uid, epoch);
+        return epoch;
+    }
+
+    /**
+     * 判断令牌中的纪元是否仍然有效
+     *
+     * @param uid   用户ID
+     * @param epoch 令牌中的纪元
+     * @return 有效返回true
+     */
+    public boolean isFresh(Long uid, long epoch) {
+        long current = current(uid);
+        return current != UNKNOWN && epoch >= current;
+    }
+
+    /**
+     * 用户的声明（角色、登录权限、手机号等）发生变化。在事务中调用时提交后才递增，
+     * 避免提交前签发的令牌带着新纪元和旧声明
+     *
+     * @param uid 用户ID
+     */
+    public void bumpUser(Long uid) {
+        afterCommit(() -> increment(uid));
+    }
+
+    /**
+     * 批量修改后递增一组用户的纪元，提交后在一次管道中执行；
+     * 用户数超过批量阈值时通知其他节点清空全部，而不是逐个发送
+     *
+     * @param uids 用户ID
+     */
+    public void bumpUsers(Collection<Long> uids) {
+        afterCommit(() -> incrementAll(uids));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (UserCache.ALL.equals(body)) {
+            epochs.invalidateAll();
+            return;
+        }
+        try {
+            epochs.invalidate(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            logger.warn("忽略无效的权限纪元失效消息: {}", body);
+        }
+    }
+
+    private void increment(Long uid) {
+        epochs.invalidate(uid);
+        try {
+            Long epoch = stringRedisTemplate.opsForValue().increment(EPOCH_KEY + uid);
+            if (epoch != null) {
+                epochs.put(uid, epoch);
+            }
+            stringRedisTemplate.convertAndSend(UserCache.INVALIDATE_CHANNEL, String.valueOf(uid));
+        } catch (Exception e) {
+            // 未能递增时已签发的令牌在过期前仍被视为有效
+            logger.error("递增用户{}的权限纪元失败: {}", uid, e.getMessage());
+        }
+    }
+
+    private void incrementAll(Collection<Long> uids) {
+        epochs.invalidateAll(uids);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long uid : uids) {
+                    connection.stringCommands().incr((EPOCH_KEY + uid).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            if (uids.size() > UserCache.BULK_EVICT_THRESHOLD) {
+                stringRedisTemplate.convertAndSend(UserCache.INVALIDATE_CHANNEL, UserCache.ALL);
+            } else {
+                for (Long uid : uids) {
+                    stringRedisTemplate.convertAndSend(UserCache.INVALIDATE_CHANNEL, String.valueOf(uid));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("批量递增{}个用户的权限纪元失败: {}", uids.size(), e.getMessage());
+        }
+    }
+
+    // 在当前事务提交后执行，没有事务时立即执行
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
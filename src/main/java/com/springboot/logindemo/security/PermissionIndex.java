@@ -0,0 +1,573 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-2
+ * @description 用户有效权限索引（权限位图）
+ */
+package com.springboot.logindemo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springboot.logindemo.cache.UserCache;
+import com.springboot.logindemo.domain.Permission;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.repository.UserDao;
+import com.springboot.logindemo.utils.PermissionUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 将每个用户的有效权限编译为按权限序号索引的位图。
+ * 权限ID在首次出现时被分配一个紧凑的序号，用户位图为其所有角色权限位图的并集，
+ * 权限的启用状态单独保存在一个全局掩码中，因此禁用/启用权限只需翻转一位。
+ * 命中时的权限检查为O(1)，不分配对象也不访问数据库；未命中时从数据库加载一次用户。
+ * 用户位图按容量和写入时间淘汰；失效在事务提交后执行并通知其他节点：用户变化通过用户缓存的频道发送uid；
+ * 角色或权限变化通过只有权限索引订阅的频道发送role:{角色ID}或perm:{权限ID}，不会清空其他节点的用户缓存。
+ * 角色和权限的Hibernate二级缓存只在本进程内，收到这两种消息时先清除对应的缓存项，重新编译时读到的是数据库中的新数据。
+ * 从数据库加载用户期间发生失效时，加载结果只返回给本次调用，不放入索引。
+ */
+@Component
+public class PermissionIndex implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionIndex.class);
+
+    // 角色和权限变化的失效频道，消息为role:{角色ID}或perm:{权限ID}
+    public static final String INVALIDATE_CHANNEL = "permission:index:invalidate";
+
+    private static final String ROLE_PREFIX = "role:";
+
+    private static final String PERMISSION_PREFIX = "perm:";
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private EntityManagerFactory entityManagerFactory;
+
+    // 权限ID -> 序号（写时复制的开放寻址表）
+    private volatile OrdinalTable ordinals = new OrdinalTable(64);
+
+    // 序号 -> 权限ID
+    private volatile long[] permissionIds = new long[64];
+
+    // 权限名 -> 权限ID
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+
+    // 已启用权限的位掩码
+    private volatile long[] activeMask = new long[1];
+
+    // 角色ID -> 角色权限位图
+    private final Map<Long, long[]> roleBits = new ConcurrentHashMap<>();
+
+    // 用户ID -> 用户有效权限
+    private final Cache<Long, Entry> userEntries;
+
+    private int nextOrdinal = 0;
+
+    // 每次失效加一，加载期间发生失效时不缓存加载结果
+    private final AtomicLong generation = new AtomicLong();
+
+    // 保护序号分配和掩码更新；使用显式锁而非synchronized，虚拟线程等待时不会钉住载体线程
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public PermissionIndex(@Value("${permission.index.max-size:10000}") long maxSize,
+            @Value("${permission.index.ttl-seconds:300}") long ttlSeconds) {
+        this.userEntries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    @PostConstruct
+    public void register() {
+        PermissionUtils.setPermissionIndex(this);
+    }
+
+    /**
+     * 检查用户是否拥有指定权限ID（且该权限处于启用状态）
+     *
+     * @param uid          用户ID
+     * @param permissionId 权限ID
+     * @return 拥有返回true
+     */
+    public boolean hasPermission(Long uid, long permissionId) {
+        Entry entry = entryOf(uid);
+        if (entry == null) {
+            return false;
+        }
+        int ordinal = ordinals.get(permissionId);
+        return ordinal >= 0 && isSet(entry.bits, ordinal) && isSet(activeMask, ordinal);
+    }
+
+    /**
+     * 检查用户是否拥有指定名称的权限
+     *
+     * @param uid            用户ID
+     * @param permissionName 权限名称
+     * @return 拥有返回true
+     */
+    public boolean hasPermission(Long uid, String permissionName) {
+        Long permissionId = idsByName.get(permissionName);
+        if (permissionId == null) {
+            // 名称尚未出现过时先加载用户，使其权限被编入索引
+            if (entryOf(uid) == null || (permissionId = idsByName.get(permissionName)) == null) {
+                return false;
+            }
+        }
+        return hasPermission(uid, permissionId);
+    }
+
+    /**
+     * 检查用户是否拥有指定角色
+     *
+     * @param uid    用户ID
+     * @param roleId 角色ID
+     * @return 拥有返回true
+     */
+    public boolean hasRole(Long uid, long roleId) {
+        Entry entry = entryOf(uid);
+        if (entry == null) {
+            return false;
+        }
+        for (long id : entry.roleIds) {
+            if (id == roleId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取用户持有的角色ID
+     *
+     * @param uid 用户ID
+     * @return 角色ID列表，用户不存在时为空
+     */
+    public List<Long> getRoleIds(Long uid) {
+        Entry entry = entryOf(uid);
+        List<Long> result = new ArrayList<>();
+        if (entry != null) {
+            for (long id : entry.roleIds) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取用户所有已启用的权限ID
+     *
+     * @param uid 用户ID
+     * @return 权限ID列表
+     */
+    public List<Long> getPermissionIds(Long uid) {
+        Entry entry = entryOf(uid);
+        List<Long> result = new ArrayList<>();
+        if (entry == null) {
+            return result;
+        }
+        long[] active = activeMask;
+        long[] ids = permissionIds;
+        for (int word = 0; word < entry.bits.length && word < active.length; word++) {
+            long bits = entry.bits[word] & active[word];
+            while (bits != 0) {
+                int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                result.add(ids[ordinal]);
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    // 用户的角色发生变化，丢弃其位图
+    public void invalidateUser(Long uid) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            userEntries.invalidate(uid);
+            publish(String.valueOf(uid));
+        });
+    }
+
+    // 批量修改了一组用户的角色；用户数超过批量阈值时通知其他节点清空全部
+    public void invalidateUsers(Collection<Long> uids) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            userEntries.invalidateAll(uids);
+            if (uids.size() > UserCache.BULK_EVICT_THRESHOLD) {
+                publish(UserCache.ALL);
+            } else {
+                uids.forEach(uid -> publish(String.valueOf(uid)));
+            }
+        });
+    }
+
+    // 角色的权限发生变化，丢弃角色位图及所有持有该角色的用户位图，其他节点收到role:{角色ID}后同样处理
+    public void invalidateRole(Long roleId) {
+        afterCommit(() -> {
+            dropRole(roleId);
+            publishIndex(ROLE_PREFIX + roleId);
+        });
+    }
+
+    // 权限被启用或禁用，本节点只需翻转全局掩码中的一位；其他节点收到perm:{权限ID}后从数据库读取新的启用状态
+    public void setPermissionActive(Long permissionId, boolean active) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            int ordinal = ordinals.get(permissionId);
+            if (ordinal >= 0) {
+                updateActive(ordinal, active);
+            }
+            publishIndex(PERMISSION_PREFIX + permissionId);
+        });
+    }
+
+    // 清空本节点的整个索引
+    public void invalidateAll() {
+        afterCommit(this::clearLocal);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            if (body.startsWith(ROLE_PREFIX)) {
+                Long roleId = Long.valueOf(body.substring(ROLE_PREFIX.length()));
+                evictRole(roleId);
+                dropRole(roleId);
+            } else if (body.startsWith(PERMISSION_PREFIX)) {
+                refreshPermission(Long.valueOf(body.substring(PERMISSION_PREFIX.length())));
+            } else if (UserCache.ALL.equals(body)) {
+                clearLocal();
+            } else {
+                generation.incrementAndGet();
+                userEntries.invalidate(Long.valueOf(body));
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("忽略无效的权限索引失效消息: {}", body);
+        }
+    }
+
+    private void dropRole(Long roleId) {
+        generation.incrementAndGet();
+        roleBits.remove(roleId);
+        userEntries.asMap().values().removeIf(entry -> {
+            for (long id : entry.roleIds) {
+                if (id == roleId) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    // 清除本节点二级缓存中的角色及其权限集合
+    private void evictRole(Long roleId) {
+        if (entityManagerFactory == null) {
+            return;
+        }
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(Role.class, roleId);
+        cache.evictCollectionData(Role.class.getName() + ".permissions", roleId);
+        cache.evictDefaultQueryRegion();
+    }
+
+    // 清除本节点二级缓存中的权限，再从数据库读取启用状态更新掩码；权限已删除时视为禁用
+    private void refreshPermission(Long permissionId) {
+        generation.incrementAndGet();
+        if (entityManagerFactory == null) {
+            return;
+        }
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(Permission.class, permissionId);
+        cache.evictDefaultQueryRegion();
+        int ordinal = ordinals.get(permissionId);
+        if (ordinal < 0) {
+            return;
+        }
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Permission permission = entityManager.find(Permission.class, permissionId);
+            updateActive(ordinal, permission != null && permission.getActive() != null && permission.getActive() == 1);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void clearLocal() {
+        generation.incrementAndGet();
+        userEntries.invalidateAll();
+        roleBits.clear();
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(UserCache.INVALIDATE_CHANNEL, message);
+        } catch (Exception e) {
+            logger.warn("通知其他节点清除权限索引失败: {}", e.getMessage());
+        }
+    }
+
+    private void publishIndex(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, message);
+        } catch (Exception e) {
+            logger.warn("通知其他节点清除权限索引失败: {}", e.getMessage());
+        }
+    }
+
+    private Entry entryOf(Long uid) {
+        if (uid == null) {
+            return null;
+        }
+        Entry entry = userEntries.getIfPresent(uid);
+        if (entry != null) {
+            return entry;
+        }
+        long expected = generation.get();
+        User user = userDao.findWithPermissionsByUid(uid).orElse(null);
+        if (user == null) {
+            return null;
+        }
+        entry = compile(user, expected);
+        // 加载期间发生了失效，加载结果可能是旧数据，只用于本次判断
+        if (generation.get() == expected) {
+            userEntries.put(uid, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 使用已加载的用户实体编译其有效权限并放入索引
+     *
+     * @param user 用户实体（需已加载角色和权限）
+     * @return 编译后的索引项
+     */
+    public Entry index(User user) {
+        Entry entry = compile(user, generation.get());
+        userEntries.put(user.getUid(), entry);
+        return entry;
+    }
+
+    // 角色位图同样只在加载期间没有发生失效时缓存
+    private Entry compile(User user, long expected) {
+        long[] bits = new long[0];
+        long[] roleIds = new long[0];
+        if (user.getRoles() != null) {
+            roleIds = new long[user.getRoles().size()];
+            int i = 0;
+            for (Role role : user.getRoles()) {
+                roleIds[i++] = role.getId();
+                long[] roleBitmap = roleBits.get(role.getId());
+                if (roleBitmap == null) {
+                    roleBitmap = compile(role, expected);
+                    if (generation.get() == expected) {
+                        roleBits.putIfAbsent(role.getId(), roleBitmap);
+                    }
+                }
+                bits = or(bits, roleBitmap);
+            }
+        }
+        return new Entry(bits, roleIds);
+    }
+
+    private long[] compile(Role role, long expected) {
+        long[] bits = new long[0];
+        if (role.getPermissions() == null) {
+            return bits;
+        }
+        for (Permission permission : role.getPermissions()) {
+            int ordinal = ordinalOf(permission, expected);
+            if (ordinal >>> 6 >= bits.length) {
+                bits = Arrays.copyOf(bits, (ordinal >>> 6) + 1);
+            }
+            bits[ordinal >>> 6] |= 1L << ordinal;
+        }
+        return bits;
+    }
+
+    // 启用状态是全局的，加载期间发生失效时不用可能过期的状态覆盖它
+    private int ordinalOf(Permission permission, long expected) {
+        int ordinal = ordinals.get(permission.getId());
+        if (ordinal < 0) {
+            ordinal = assignOrdinal(permission.getId());
+        }
+        if (permission.getName() != null) {
+            idsByName.put(permission.getName(), permission.getId());
+        }
+        if (generation.get() == expected) {
+            updateActive(ordinal, permission.getActive() != null && permission.getActive() == 1);
+        }
+        return ordinal;
+    }
+
+    private int assignOrdinal(long permissionId) {
+        writeLock.lock();
+        try {
+            int ordinal = ordinals.get(permissionId);
+            if (ordinal >= 0) {
+                return ordinal;
+            }
+            ordinal = nextOrdinal++;
+            long[] ids = permissionIds;
+            if (ordinal >= ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[ordinal] = permissionId;
+            permissionIds = ids;
+            ordinals = ordinals.with(permissionId, ordinal);
+            return ordinal;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void updateActive(int ordinal, boolean active) {
+        if (isSet(activeMask, ordinal) == active) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (isSet(activeMask, ordinal) == active) {
+                return;
+            }
+            long[] mask = Arrays.copyOf(activeMask, Math.max(activeMask.length, (ordinal >>> 6) + 1));
+            if (active) {
+                mask[ordinal >>> 6] |= 1L << ordinal;
+            } else {
+                mask[ordinal >>> 6] &= ~(1L << ordinal);
+            }
+            activeMask = mask;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static boolean isSet(long[] bits, int ordinal) {
+        int word = ordinal >>> 6;
+        return word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    private static long[] or(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, Math.max(a.length, b.length));
+        for (int i = 0; i < b.length; i++) {
+            result[i] |= b[i];
+        }
+        return result;
+    }
+
+    // 在当前事务提交后再失效，避免并发请求在提交前用旧数据重建索引
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 用户有效权限：权限位图及角色ID
+     */
+    public static final class Entry {
+        private final long[] bits;
+        private final long[] roleIds;
+
+        Entry(long[] bits, long[] roleIds) {
+            this.bits = bits;
+            this.roleIds = roleIds;
+        }
+    }
+
+    /**
+     * 权限ID到序号的只读开放寻址表，新增时复制一份
+     */
+    private static final class OrdinalTable {
+        private final long[] keys;
+        private final int[] values;
+        private final int size;
+
+        OrdinalTable(int capacity) {
+            this(new long[capacity], new int[capacity], 0);
+        }
+
+        private OrdinalTable(long[] keys, int[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+                if (values[i] == 0) {
+                    return -1;
+                }
+                if (keys[i] == key) {
+                    return values[i] - 1;
+                }
+            }
+        }
+
+        OrdinalTable with(long key, int ordinal) {
+            int capacity = keys.length;
+            while ((size + 1) * 2 > capacity) {
+                capacity <<= 1;
+            }
+            OrdinalTable table = new OrdinalTable(new long[capacity], new int[capacity], size + 1);
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != 0) {
+                    table.put(keys[i], values[i]);
+                }
+            }
+            table.put(key, ordinal + 1);
+            return table;
+        }
+
+        // 值存储为序号+1，0表示空槽
+        private void put(long key, int value) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-3
+ * @description 请求令牌预解析过滤器
+ */
+package com.springboot.logindemo.security;
+
+import com.springboot.logindemo.utils.JwtUtils;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 每个请求只校验一次令牌（token参数或Authorization: Bearer头），
+ * 并将解析结果挂到请求上，之后的JwtUtils调用直接复用，不再重复验签。
+ * 令牌无效时不做拦截，由各接口按原有逻辑返回错误。
+ */
+@Component
+public class TokenPrincipalFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String token = resolveToken(request);
+        if (token != null) {
+            try {
+                Claims claims = JwtUtils.verifyToken(token);
+                JwtUtils.attachPrincipal(request, token, claims);
+            } catch (Exception e) {
+                // 无效令牌交给接口自行处理
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private String resolveToken(HttpServletRequest request) {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length()).trim();
+        }
+        String token = request.getParameter("token");
+        if (token == null || token.trim().isEmpty()) {
+            return null;
+        }
+        return token.trim();
+    }
+}
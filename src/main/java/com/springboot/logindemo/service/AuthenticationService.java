@@ -31,7 +31,7 @@ public interface AuthenticationService {
      * 
      * @param file     文件
      * @param fileType 文件类型
-     * @return 文件访问路径
+     * @return 带签名和过期时间的文件访问路径
      */
     String uploadFile(MultipartFile file, String fileType);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@
  */
 package com.springboot.logindemo.service;
 
+import com.springboot.logindemo.domain.Role;
 import com.springboot.logindemo.domain.User;
 import com.springboot.logindemo.repository.UserDao;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,26 +33,36 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUname(username);
+        User user = userRepository.findWithPermissionsByUname(username);
+        if (user == null) {
+            throw new UsernameNotFoundException("用户不存在: " + username);
+        }
 
         List<GrantedAuthority> authorities = new ArrayList<>();
 
-        // 添加角色
-        authorities.add(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()));
+        if (user.getRoles() != null) {
+            for (Role role : user.getRoles()) {
+                // 添加角色
+                authorities.add(new SimpleGrantedAuthority("ROLE_" + role.getName()));
 
-        // 添加该角色拥有的所有权限
-        authorities.addAll(
-                user.getRole().getPermissionNames().stream()
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList()));
+                // 添加该角色拥有的所有已启用权限
+                if (role.getPermissions() != null) {
+                    authorities.addAll(
+                            role.getPermissions().stream()
+                                    .filter(permission -> Integer.valueOf(1).equals(permission.getActive()))
+                                    .map(permission -> new SimpleGrantedAuthority(permission.getName()))
+                                    .collect(Collectors.toList()));
+                }
+            }
+        }
 
         return new org.springframework.security.core.userdetails.User(
                 user.getUname(),
                 user.getPassword(),
-                user.getStatus() == 1, // enabled
+                Integer.valueOf(1).equals(user.getLoginPermission()), // enabled
                 true, // accountNonExpired
                 true, // credentialsNonExpired
                 true, // accountNonLocked
                 authorities);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
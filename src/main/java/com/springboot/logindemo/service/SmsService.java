@@ -0,0 +1,15 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 短信验证码服务接口
+ */
+package com.springboot.logindemo.service;
+
+public interface SmsService {
+    // 检查手机号的发送频率并占用一次额度，超限时抛出SmsRateLimitedException
+    void acquireSendPermit(String phoneNum);
+
+    // 异步发送验证码短信，入队后立即返回
+    void sendVerifyCode(String phoneNum, String code);
+}
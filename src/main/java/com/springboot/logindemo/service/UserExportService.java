@@ -0,0 +1,23 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-13
+ * @description 用户导出服务接口
+ */
+package com.springboot.logindemo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface UserExportService {
+    // 导出格式
+    String CSV = "csv";
+    String NDJSON = "ndjson";
+
+    // 将全部用户（含角色和部门）以指定格式流式写出，调用方负责权限校验
+    void exportUsers(String format, OutputStream out) throws IOException;
+
+    // 同上，从cursor之后的uid开始，可按登录权限和部门过滤，参数为null时不限制
+    void exportUsers(String format, Long cursor, Integer loginPermission, Long departmentId, OutputStream out)
+            throws IOException;
+}
@@ -0,0 +1,19 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-14
+ * @description 用户批量导入服务接口
+ */
+package com.springboot.logindemo.service;
+
+import com.springboot.logindemo.dto.UserImportStatusDto;
+
+import java.io.InputStream;
+
+public interface UserImportService {
+    // 提交导入任务，content为CSV（表头phonenum,uname,password）或NDJSON，先写入临时文件再排队，返回任务ID
+    String submitImport(String format, InputStream content);
+
+    // 获取导入任务状态，任务不存在时返回null
+    UserImportStatusDto getStatus(String jobId);
+}
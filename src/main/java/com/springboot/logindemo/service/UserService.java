@@ -1,20 +1,26 @@
 package com.springboot.logindemo.service;
 
 import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.dto.BulkRolesResultDto;
+import com.springboot.logindemo.dto.UserPageDto;
 import com.springboot.logindemo.dto.UserRolePermissionDto;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 //注册登录的业务逻辑方法
 public interface UserService {
-    User loginService(String account, String password);
+    // 签发令牌的方法在确定uid之后、加载声明之前调用beforeLoad（用于读取权限纪元），
+    // 之后提交的修改会递增纪元，不会出现新纪元配旧声明的令牌
+    User loginService(String account, String password, LongConsumer beforeLoad);
 
-    User registerService(String phoneNum, String password, String uname);
+    // 保存用户后在同一事务中调用afterCreate，其他事务此时还看不到新用户
+    User registerService(String phoneNum, String password, String uname, LongConsumer afterCreate);
 
-    User verifyService(String phonenum);
+    User verifyService(String phonenum, LongConsumer beforeLoad);
 
     boolean updatePassword(String phoneNum, String newPassword);
 
@@ -33,15 +39,31 @@ public interface UserService {
     // 新增移除用户角色方法
     boolean removeRoles(String adminPhoneNum, String targetPhoneNum, Set<Long> roleIds);
 
+    // 批量为多个用户（按手机号）分配角色，在一个事务中完成
+    BulkRolesResultDto bulkAssignRoles(String adminPhoneNum, Set<String> targetPhoneNums, Set<Long> roleIds);
+
+    // 批量移除多个用户（按手机号）的角色，在一个事务中完成
+    BulkRolesResultDto bulkRemoveRoles(String adminPhoneNum, Set<String> targetPhoneNums, Set<Long> roleIds);
+
     // 获取所有用户（包括loginPermission为0的）
     List<User> getAllUsers(String token);
 
+    // 按uid游标分页获取用户摘要，可按登录权限和部门过滤，includeRoles为true时附带角色
+    UserPageDto listUsers(String token, Long cursor, Integer size, Integer loginPermission, Long departmentId,
+            boolean includeRoles);
+
     // 根据token获取用户信息
     Map<String, Object> getUserInfoByToken(String token);
 
+    // 根据token获取用户已启用的权限ID
+    List<Long> getUserPermissionIds(String token);
+
     // 根据token获取用户角色和权限信息
     UserRolePermissionDto getUserRolePermissionByToken(String token);
 
+    // 根据token检查是否为管理员（拥有ID为1的角色），token无效时返回false，读取角色失败时抛出异常
+    boolean isAdmin(String token);
+
     // 根据账号检查用户是否拥有指定角色
     boolean hasRoleByAccount(String account, Long roleId);
 
@@ -1,34 +1,39 @@
 package com.springboot.logindemo.service.serviceImpl;
 
+import com.springboot.logindemo.cache.AuthenticationStatusCache;
 import com.springboot.logindemo.dao.AuthenticationDao;
 import com.springboot.logindemo.dao.EnterpriseDao;
 import com.springboot.logindemo.dao.IndividualBusinessDao;
+import com.springboot.logindemo.dao.LatestAuthentication;
 import com.springboot.logindemo.dao.NaturalPersonDao;
 import com.springboot.logindemo.domain.Authentication;
 import com.springboot.logindemo.domain.Enterprise;
+import com.springboot.logindemo.domain.FileBlob;
 import com.springboot.logindemo.domain.IndividualBusiness;
 import com.springboot.logindemo.domain.NaturalPerson;
 import com.springboot.logindemo.dto.AuthenticationDto;
 import com.springboot.logindemo.service.AuthenticationService;
 import com.springboot.logindemo.service.UserService;
+import com.springboot.logindemo.storage.BlobStore;
+import com.springboot.logindemo.storage.FileUrlSigner;
+import com.springboot.logindemo.storage.StoredBlob;
+import com.springboot.logindemo.storage.StreamingFileWriter;
+import com.springboot.logindemo.storage.ThumbnailPipeline;
 import com.springboot.logindemo.utils.JwtUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.regex.Pattern;
 
 /**
  * @author 认证服务实现类
@@ -36,6 +41,11 @@ import java.util.UUID;
 @Service
 public class AuthenticationServiceImpl implements AuthenticationService {
 
+    // 文件类型会拼进存储路径，只允许字母、数字、下划线和短横线
+    private static final Pattern FILE_TYPE = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+    // 认证材料只接受PDF和图片，扩展名决定下载时的Content-Type
+    private static final Pattern FILE_EXTENSION = Pattern.compile("\\.(pdf|jpe?g|png)", Pattern.CASE_INSENSITIVE);
+
     @Autowired
     private AuthenticationDao authenticationDao;
 
@@ -51,11 +61,23 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     @Autowired
     private UserService userService;
 
-    @Value("${file.upload.path}")
-    private String fileUploadPath;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StreamingFileWriter fileWriter;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ThumbnailPipeline thumbnailPipeline;
+
+    @Autowired
+    private FileUrlSigner fileUrlSigner;
 
-    @Value("${file.access.path}")
-    private String fileAccessPath;
+    @Autowired
+    private AuthenticationStatusCache authenticationStatusCache;
 
     @Override
     @Transactional
@@ -91,6 +113,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         result.put("authStatus", authentication.getAuthStatus());
         result.put("createTime", authentication.getCreateTime());
 
+        authenticationStatusCache.evict(authentication.getUserId());
         return result;
     }
 
@@ -102,56 +125,37 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         }
         String uid = JwtUtils.getUserIdFromToken(token);
 
-        // 查询用户的认证记录
-        List<Authentication> authentications = authenticationDao.findByUserId(Long.parseLong(uid));
+        // 一次查询取出最新的认证记录及其详情
+        LatestAuthentication latestAuth = authenticationStatusCache.get(Long.parseLong(uid),
+                authenticationDao::findLatestByUserId);
 
         Map<String, Object> result = new HashMap<>();
-        if (authentications.isEmpty()) {
+        if (latestAuth == null) {
             result.put("hasAuthentication", false);
         } else {
-            // 获取最新的认证记录
-            Authentication latestAuth = authentications.stream()
-                    .max((a1, a2) -> a1.getCreateTime().compareTo(a2.getCreateTime()))
-                    .get();
-
             result.put("hasAuthentication", true);
-            result.put("authId", latestAuth.getId());
+            result.put("authId", latestAuth.getAuthId());
             result.put("authType", latestAuth.getAuthType());
             result.put("authStatus", latestAuth.getAuthStatus());
             result.put("createTime", latestAuth.getCreateTime());
 
-            // 根据认证类型获取详细信息
-            if ("natural".equals(latestAuth.getAuthType())) {
-                NaturalPerson naturalPerson = naturalPersonDao.findByAuthId(latestAuth.getId());
-                if (naturalPerson != null) {
-                    Map<String, Object> details = new HashMap<>();
-                    details.put("name", naturalPerson.getName());
-                    details.put("idCard", naturalPerson.getIdCard());
-                    details.put("phone", naturalPerson.getPhone());
-                    details.put("promiseFile", naturalPerson.getPromiseFile());
-                    details.put("delegateFile", naturalPerson.getDelegateFile());
-                    result.put("details", details);
-                }
-            } else if ("individual".equals(latestAuth.getAuthType())) {
-                IndividualBusiness individualBusiness = individualBusinessDao.findByAuthId(latestAuth.getId());
-                if (individualBusiness != null) {
-                    Map<String, Object> details = new HashMap<>();
-                    details.put("name", individualBusiness.getName());
-                    details.put("taxNo", individualBusiness.getTaxNo());
-                    details.put("address", individualBusiness.getAddress());
-                    details.put("licenseFile", individualBusiness.getLicenseFile());
-                    result.put("details", details);
-                }
-            } else if ("enterprise".equals(latestAuth.getAuthType())) {
-                Enterprise enterprise = enterpriseDao.findByAuthId(latestAuth.getId());
-                if (enterprise != null) {
-                    Map<String, Object> details = new HashMap<>();
-                    details.put("name", enterprise.getName());
-                    details.put("taxNo", enterprise.getTaxNo());
-                    details.put("address", enterprise.getAddress());
-                    details.put("licenseFile", enterprise.getLicenseFile());
-                    result.put("details", details);
+            // 根据认证类型组装详细信息
+            if (latestAuth.getDetailId() != null) {
+                Map<String, Object> details = new HashMap<>();
+                details.put("name", latestAuth.getName());
+                if ("natural".equals(latestAuth.getAuthType())) {
+                    details.put("idCard", latestAuth.getIdCard());
+                    details.put("phone", latestAuth.getPhone());
+                    details.put("promiseFile", latestAuth.getPromiseFile());
+                    details.put("delegateFile", latestAuth.getDelegateFile());
+                    putDerivatives(details, "promiseFile", "delegateFile");
+                } else {
+                    details.put("taxNo", latestAuth.getTaxNo());
+                    details.put("address", latestAuth.getAddress());
+                    details.put("licenseFile", latestAuth.getLicenseFile());
+                    putDerivatives(details, "licenseFile");
                 }
+                result.put("details", details);
             }
         }
 
@@ -160,31 +164,71 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
     @Override
     public String uploadFile(MultipartFile file, String fileType) {
+        return fileUrlSigner.sign(storeFile(file, fileType));
+    }
+
+    // 保存上传文件，返回不带签名的访问路径，写入认证详情表
+    private String storeFile(MultipartFile file, String fileType) {
         if (file.isEmpty()) {
             throw new RuntimeException("文件不能为空");
         }
+        if (fileType == null || !FILE_TYPE.matcher(fileType).matches()) {
+            throw new RuntimeException("无效的文件类型");
+        }
+        // 声明的大小已超过上限时不必开始写入；实际写入时仍按读到的字节数检查
+        if (file.getSize() > fileWriter.getMaxBytes()) {
+            throw new RuntimeException("文件大小超过" + fileWriter.getMaxBytes() + "字节的上限");
+        }
+        String fileExtension = getFileExtension(file.getOriginalFilename());
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
         try {
-            // 生成文件存储路径
-            String dateFolder = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-            String fileExtension = getFileExtension(file.getOriginalFilename());
-            String newFileName = UUID.randomUUID().toString() + fileExtension;
-
-            // 确保目录存在
-            String directoryPath = fileUploadPath + File.separator + fileType + File.separator + dateFolder;
-            Path directory = Paths.get(directoryPath);
-            if (!Files.exists(directory)) {
-                Files.createDirectories(directory);
-            }
-
-            // 保存文件
-            Path filePath = Paths.get(directoryPath, newFileName);
-            Files.write(filePath, file.getBytes());
+            // 保存文件：Tomcat已把上传内容暂存在磁盘上，这里从其输入流直接转移到内容存储，不经过堆内存；
+            // 文件按内容摘要存放，重复上传相同内容时复用已有文件
+            StoredBlob stored = blobStore.store(file.getInputStream(), fileExtension);
+            // 写入字节数的总和按时间求速率即为上传吞吐量（字节/秒）
+            DistributionSummary.builder("upload.size")
+                    .description("上传文件大小")
+                    .baseUnit("bytes")
+                    .register(meterRegistry)
+                    .record(stored.size());
+            outcome = "success";
+
+            // 缩略图和预览图在后台生成
+            thumbnailPipeline.submit(stored.url());
 
             // 返回文件访问路径
-            return fileAccessPath + "/" + fileType + "/" + dateFolder + "/" + newFileName;
+            return stored.url();
         } catch (IOException e) {
             throw new RuntimeException("文件上传失败: " + e.getMessage());
+        } finally {
+            sample.stop(Timer.builder("upload.duration")
+                    .description("保存上传文件的耗时")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    // 为详情中的文件补充缩略图（xxxThumbnail）和预览图（xxxPreview）路径，尚未生成时重新排队；返回的路径都加上签名
+    private void putDerivatives(Map<String, Object> details, String... fileKeys) {
+        List<String> urls = new ArrayList<>();
+        for (String key : fileKeys) {
+            urls.add((String) details.get(key));
+        }
+        Map<String, FileBlob> blobs = blobStore.findAll(urls);
+        for (String key : fileKeys) {
+            FileBlob blob = blobs.get((String) details.get(key));
+            details.put(key + "Thumbnail", blob == null ? null : blob.getThumbnailUrl());
+            details.put(key + "Preview", blob == null ? null : blob.getPreviewUrl());
+            if (blob != null && blob.getThumbnailUrl() == null) {
+                thumbnailPipeline.submit((String) details.get(key));
+            }
+        }
+        for (String key : fileKeys) {
+            for (String name : new String[] { key, key + "Thumbnail", key + "Preview" }) {
+                details.put(name, fileUrlSigner.sign((String) details.get(name)));
+            }
         }
     }
 
@@ -199,14 +243,16 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
         // 上传文件
         if (authDto.getPromiseFile() != null && !authDto.getPromiseFile().isEmpty()) {
-            naturalPerson.setPromiseFile(uploadFile(authDto.getPromiseFile(), "promise"));
+            naturalPerson.setPromiseFile(storeFile(authDto.getPromiseFile(), "promise"));
         }
 
         if (authDto.getDelegateFile() != null && !authDto.getDelegateFile().isEmpty()) {
-            naturalPerson.setDelegateFile(uploadFile(authDto.getDelegateFile(), "delegate"));
+            naturalPerson.setDelegateFile(storeFile(authDto.getDelegateFile(), "delegate"));
         }
 
         naturalPersonDao.save(naturalPerson);
+        blobStore.retain(naturalPerson.getPromiseFile());
+        blobStore.retain(naturalPerson.getDelegateFile());
     }
 
     // 保存个体工商户认证信息
@@ -219,10 +265,11 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
         // 上传文件
         if (authDto.getLicenseFile() != null && !authDto.getLicenseFile().isEmpty()) {
-            individualBusiness.setLicenseFile(uploadFile(authDto.getLicenseFile(), "license"));
+            individualBusiness.setLicenseFile(storeFile(authDto.getLicenseFile(), "license"));
         }
 
         individualBusinessDao.save(individualBusiness);
+        blobStore.retain(individualBusiness.getLicenseFile());
     }
 
     // 保存企业法人认证信息
@@ -235,18 +282,20 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
         // 上传文件
         if (authDto.getLicenseFile() != null && !authDto.getLicenseFile().isEmpty()) {
-            enterprise.setLicenseFile(uploadFile(authDto.getLicenseFile(), "license"));
+            enterprise.setLicenseFile(storeFile(authDto.getLicenseFile(), "license"));
         }
 
         enterpriseDao.save(enterprise);
+        blobStore.retain(enterprise.getLicenseFile());
     }
 
-    // 获取文件扩展名
+    // 获取文件扩展名，不在白名单中时拒绝上传
     private String getFileExtension(String filename) {
-        if (filename == null) {
-            return "";
+        int dotIndex = filename == null ? -1 : filename.lastIndexOf('.');
+        String extension = (dotIndex == -1) ? "" : filename.substring(dotIndex);
+        if (!FILE_EXTENSION.matcher(extension).matches()) {
+            throw new RuntimeException("只支持PDF、JPG和PNG文件");
         }
-        int dotIndex = filename.lastIndexOf('.');
-        return (dotIndex == -1) ? "" : filename.substring(dotIndex);
+        return extension;
     }
 }
\ No newline at end of file
@@ -7,13 +7,11 @@
 package com.springboot.logindemo.service.serviceImpl;
 
 import com.springboot.logindemo.domain.Department;
-import com.springboot.logindemo.domain.Role;
 import com.springboot.logindemo.domain.User;
 import com.springboot.logindemo.repository.DepartmentDao;
-import com.springboot.logindemo.repository.RoleDao;
 import com.springboot.logindemo.repository.UserDao;
+import com.springboot.logindemo.security.AdminAuthorization;
 import com.springboot.logindemo.service.DepartmentService;
-import com.springboot.logindemo.service.UserService;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,49 +24,26 @@ import java.util.Set;
 @Service
 public class DepartmentServiceImpl implements DepartmentService {
 
-    @Resource
-    private UserService userService;
+    @Resource // 管理员权限校验
+    private AdminAuthorization adminAuthorization;
 
     @Resource
     private DepartmentDao departmentDao;
 
-    @Resource
-    private RoleDao roleDao;
-
     @Resource
     private UserDao userDao;
 
-    private void validateAdminPermission(String adminPhoneNum) {
-        User admin = userService.findByAccount(adminPhoneNum);
-        if (admin == null) {
-            throw new RuntimeException("用户不存在");
-        }
-
-        // 获取用户的角色ID
-        Set<Long> roleIds = userService.getUserRoleIds(adminPhoneNum, adminPhoneNum);
-        if (roleIds.isEmpty()) {
-            throw new RuntimeException("用户没有任何角色");
-        }
-
-        // 检查是否包含管理员角色（检查角色名是否包含"admin"或"管理员"）
-        boolean isAdmin = roleIds.stream()
-                .anyMatch(roleId -> {
-                    Role role = roleDao.findById(roleId).orElse(null);
-                    return role != null && ("admin".equalsIgnoreCase(role.getName()) ||
-                            role.getName().contains("admin") ||
-                            role.getName().contains("管理员"));
-                });
-
-        if (!isAdmin) {
-            throw new RuntimeException("无管理员权限");
-        }
+    // 一次查询加载用户及其部门和主部门
+    private User findWithDepartments(String account) {
+        List<User> users = userDao.findWithDepartmentsByAccount(account);
+        return users.isEmpty() ? null : users.get(0);
     }
 
     // 有管理员权限才可以创建部门
     @Override
     @Transactional
     public Department createDepartment(String adminPhoneNum, String name, String description) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证部门名是否已存在
         if (departmentDao.findByName(name) != null) {
@@ -91,10 +66,10 @@ public class DepartmentServiceImpl implements DepartmentService {
     @Transactional
     public boolean assignUserToDepartment(String adminPhoneNum, String targetPhoneNum, Set<Long> departmentIds,
             Long primaryDepartmentId) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证用户是否存在
-        User user = userService.findByAccount(targetPhoneNum);
+        User user = findWithDepartments(targetPhoneNum);
         if (user == null) {
             throw new RuntimeException("用户不存在");
         }
@@ -145,10 +120,11 @@ public class DepartmentServiceImpl implements DepartmentService {
 
     // 有管理员权限才可以获取用户的部门
     @Override
+    @Transactional(readOnly = true)
     public Set<Department> getUserDepartments(String adminPhoneNum, String targetPhoneNum) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
-        User user = userService.findByAccount(targetPhoneNum);
+        User user = findWithDepartments(targetPhoneNum);
         if (user == null) {
             throw new RuntimeException("用户不存在");
         }
@@ -164,7 +140,7 @@ public class DepartmentServiceImpl implements DepartmentService {
     @Override
     @Transactional
     public boolean deleteDepartment(String adminPhoneNum, Long departmentId) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证部门是否存在
         Department department = departmentDao.findById(departmentId)
@@ -198,14 +174,14 @@ public class DepartmentServiceImpl implements DepartmentService {
     @Override
     @Transactional
     public boolean removeUserFromDepartment(String adminPhoneNum, Long departmentId, String targetPhoneNum) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证部门是否存在
         Department department = departmentDao.findById(departmentId)
                 .orElseThrow(() -> new RuntimeException("部门不存在"));
 
         // 验证用户是否存在
-        User user = userService.findByAccount(targetPhoneNum);
+        User user = findWithDepartments(targetPhoneNum);
         if (user == null) {
             throw new RuntimeException("用户不存在");
         }
@@ -255,7 +231,7 @@ public class DepartmentServiceImpl implements DepartmentService {
     @Override
     @Transactional
     public boolean enableDepartment(String adminPhoneNum, Long departmentId) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证部门是否存在
         Department department = departmentDao.findById(departmentId)
@@ -288,7 +264,7 @@ public class DepartmentServiceImpl implements DepartmentService {
     // 获取所有部门（包括active为0的）
     @Override
     public List<Department> getAllDepartments(String adminPhoneNum) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
         try {
             return departmentDao.findAll();
         } catch (Exception e) {
@@ -8,11 +8,11 @@ package com.springboot.logindemo.service.serviceImpl;
 
 import com.springboot.logindemo.domain.Permission;
 import com.springboot.logindemo.domain.Role;
-import com.springboot.logindemo.domain.User;
 import com.springboot.logindemo.repository.PermissionDao;
 import com.springboot.logindemo.repository.RoleDao;
+import com.springboot.logindemo.security.AdminAuthorization;
+import com.springboot.logindemo.security.PermissionIndex;
 import com.springboot.logindemo.service.RolePermissionService;
-import com.springboot.logindemo.service.UserService;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,8 +25,8 @@ import java.util.stream.Collectors;
 @Service
 public class RolePermissionServiceImpl implements RolePermissionService {
 
-    @Resource
-    private UserService userService;
+    @Resource // 管理员权限校验
+    private AdminAuthorization adminAuthorization;
 
     @Resource
     private RoleDao roleDao;
@@ -34,38 +34,14 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     @Resource
     private PermissionDao permissionDao;
 
-    // 根据用户拥有的角色验证用户是否为管理员
-    private void validateAdminPermission(String adminPhoneNum) {
-        User admin = userService.findByAccount(adminPhoneNum);
-        if (admin == null) {
-            throw new RuntimeException("用户不存在");
-        }
-
-        // 获取用户的角色ID
-        Set<Long> roleIds = userService.getUserRoleIds(adminPhoneNum, adminPhoneNum);
-        if (roleIds.isEmpty()) {
-            throw new RuntimeException("用户没有任何角色");
-        }
-
-        // 检查是否包含管理员角色（检查角色名是否包含"admin"或"管理员"）
-        boolean isAdmin = roleIds.stream()
-                .anyMatch(roleId -> {
-                    Role role = roleDao.findById(roleId).orElse(null);
-                    return role != null && ("admin".equalsIgnoreCase(role.getName()) ||
-                            role.getName().contains("admin") ||
-                            role.getName().contains("管理员"));
-                });
-
-        if (!isAdmin) {
-            throw new RuntimeException("无管理员权限");
-        }
-    }
+    @Resource
+    private PermissionIndex permissionIndex;
 
     // 有管理员权限才可以为角色分配权限
     @Override
     @Transactional
     public boolean assignPermissions(String adminPhoneNum, Long roleId, Set<Long> permissionIds) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证角色是否存在
         Role role = roleDao.findById(roleId)
@@ -101,6 +77,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
             role.setPermissions(currentPermissions);
             role.setUpdateTime(LocalDateTime.now());
             roleDao.save(role);
+            permissionIndex.invalidateRole(roleId);
             return true;
         } catch (Exception e) {
             throw new RuntimeException("分配权限失败：" + e.getMessage());
@@ -111,7 +88,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     @Override
     @Transactional
     public boolean removePermissions(String adminPhoneNum, Long roleId, Set<Long> permissionIds) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证角色是否存在
         Role role = roleDao.findById(roleId)
@@ -140,6 +117,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
             role.setPermissions(currentPermissions);
             role.setUpdateTime(LocalDateTime.now());
             roleDao.save(role);
+            permissionIndex.invalidateRole(roleId);
             return true;
         } catch (RuntimeException e) {
             throw e;
@@ -197,7 +175,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     @Override
     @Transactional
     public Role createRole(String adminPhoneNum, String name, String description, Set<Long> permissionIds) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证角色名是否已存在
         Role existingRole = roleDao.findByName(name);
@@ -226,7 +204,9 @@ public class RolePermissionServiceImpl implements RolePermissionService {
         }
 
         try {
-            return roleDao.save(role);
+            Role saved = roleDao.save(role);
+            adminAuthorization.invalidate();
+            return saved;
         } catch (Exception e) {
             throw new RuntimeException("创建角色失败：" + e.getMessage());
         }
@@ -236,7 +216,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     @Override
     @Transactional
     public boolean deleteRole(String adminPhoneNum, Long roleId) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证角色是否存在
         Role role = roleDao.findById(roleId)
@@ -252,6 +232,8 @@ public class RolePermissionServiceImpl implements RolePermissionService {
             role.setActive(0);
             role.setUpdateTime(LocalDateTime.now());
             roleDao.save(role);
+            adminAuthorization.invalidate();
+            permissionIndex.invalidateRole(roleId);
             return true;
         } catch (RuntimeException e) {
             throw e;
@@ -264,7 +246,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     @Override
     @Transactional
     public boolean enableRole(String adminPhoneNum, Long roleId) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证角色是否存在
         Role role = roleDao.findById(roleId)
@@ -286,6 +268,8 @@ public class RolePermissionServiceImpl implements RolePermissionService {
             role.setActive(1);
             role.setUpdateTime(LocalDateTime.now());
             roleDao.save(role);
+            adminAuthorization.invalidate();
+            permissionIndex.invalidateRole(roleId);
             return true;
         } catch (RuntimeException e) {
             throw e;
@@ -298,7 +282,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     @Override
     @Transactional
     public boolean disablePermission(String adminPhoneNum, Long permissionId) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证权限是否存在
         Permission permission = permissionDao.findById(permissionId)
@@ -314,6 +298,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
             permission.setActive(0);
             permission.setUpdateTime(LocalDateTime.now());
             permissionDao.save(permission);
+            permissionIndex.setPermissionActive(permissionId, false);
             return true;
         } catch (RuntimeException e) {
             throw e;
@@ -326,7 +311,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     @Override
     @Transactional
     public boolean enablePermission(String adminPhoneNum, Long permissionId) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证权限是否存在
         Permission permission = permissionDao.findById(permissionId)
@@ -348,6 +333,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
             permission.setActive(1);
             permission.setUpdateTime(LocalDateTime.now());
             permissionDao.save(permission);
+            permissionIndex.setPermissionActive(permissionId, true);
             return true;
         } catch (RuntimeException e) {
             throw e;
@@ -359,7 +345,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     // 获取所有角色（包括active为0的）
     @Override
     public List<Role> getAllRoles(String adminPhoneNum) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         try {
             return roleDao.findAll();
@@ -371,7 +357,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     // 获取所有权限（包括active为0的）
     @Override
     public List<Permission> getAllPermissions(String adminPhoneNum) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         try {
             return permissionDao.findAll();
@@ -379,4 +365,4 @@ public class RolePermissionServiceImpl implements RolePermissionService {
             throw new RuntimeException("获取所有权限失败：" + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 短信验证码服务实现
+ */
+package com.springboot.logindemo.service.serviceImpl;
+
+import com.springboot.logindemo.service.SmsService;
+import com.springboot.logindemo.sms.SmsDispatcher;
+import com.springboot.logindemo.sms.SmsMessage;
+import com.springboot.logindemo.sms.SmsRateLimitedException;
+import com.springboot.logindemo.sms.SmsRateLimiter;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Service;
+
+@Service
+public class SmsServiceImpl implements SmsService {
+
+    // 阿里云上配置的验证码短信签名和模板
+    private static final String SIGN_NAME = "验证码短信";
+    private static final String TEMPLATE_CODE = "SMS_313071554";
+
+    @Resource
+    private SmsDispatcher smsDispatcher;
+
+    @Resource
+    private SmsRateLimiter smsRateLimiter;
+
+    @Override
+    public void acquireSendPermit(String phoneNum) {
+        if (!smsRateLimiter.tryAcquire(phoneNum)) {
+            throw new SmsRateLimitedException();
+        }
+    }
+
+    @Override
+    public void sendVerifyCode(String phoneNum, String code) {
+        SmsMessage message = new SmsMessage(phoneNum, SIGN_NAME, TEMPLATE_CODE, "{\"code\":\"" + code + "\"}");
+        if (!smsDispatcher.submit(message)) {
+            throw new RuntimeException("短信服务繁忙，请稍后再试");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-13
+ * @description 用户导出服务实现
+ */
+package com.springboot.logindemo.service.serviceImpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.logindemo.dto.UserSummaryDto;
+import com.springboot.logindemo.repository.UserDao;
+import com.springboot.logindemo.service.UserExportService;
+import jakarta.annotation.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按uid游标分批读取用户摘要（WHERE uid > 上一批最后的uid），每批再用两条IN查询补齐角色和部门后写出，
+ * 避免原来两个集合JOIN FETCH产生的笛卡尔积。每批是独立的短查询，不依赖驱动的流式游标，
+ * 导出过程中也不长时间占用数据库连接；任意时刻内存中最多只有一批用户。
+ */
+@Service
+public class UserExportServiceImpl implements UserExportService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String CSV_HEADER = "uid,uname,phonenum,loginPermission,adminPermission,createTime,"
+            + "updateTime,roles,departments\n";
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void exportUsers(String format, OutputStream out) throws IOException {
+        exportUsers(format, null, null, null, out);
+    }
+
+    @Override
+    public void exportUsers(String format, Long cursor, Integer loginPermission, Long departmentId,
+            OutputStream out) throws IOException {
+        boolean csv = CSV.equalsIgnoreCase(format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (csv) {
+            // BOM让Excel按UTF-8打开中文
+            writer.write('\uFEFF');
+            writer.write(CSV_HEADER);
+        }
+        long after = cursor == null ? 0L : cursor;
+        while (true) {
+            List<UserSummaryDto> chunk = userDao.findSummariesAfter(after, loginPermission, departmentId,
+                    PageRequest.of(0, CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            fillAssociations(chunk);
+            for (UserSummaryDto user : chunk) {
+                if (csv) {
+                    writeCsv(writer, user);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(user));
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+            if (chunk.size() < CHUNK_SIZE) {
+                break;
+            }
+            after = chunk.get(chunk.size() - 1).getUid();
+        }
+        writer.flush();
+    }
+
+    // 两条IN查询补齐一批用户的角色和部门
+    private void fillAssociations(List<UserSummaryDto> chunk) {
+        Map<Long, UserSummaryDto> byUid = new HashMap<>();
+        for (UserSummaryDto user : chunk) {
+            user.setRoleIds(new ArrayList<>());
+            user.setRoleNames(new ArrayList<>());
+            user.setDepartmentIds(new ArrayList<>());
+            user.setDepartmentNames(new ArrayList<>());
+            byUid.put(user.getUid(), user);
+        }
+        List<Long> uids = new ArrayList<>(byUid.keySet());
+        for (Object[] row : userDao.findRoleSummaries(uids)) {
+            UserSummaryDto user = byUid.get(((Number) row[0]).longValue());
+            user.getRoleIds().add(((Number) row[1]).longValue());
+            user.getRoleNames().add((String) row[2]);
+        }
+        for (Object[] row : userDao.findDepartmentSummaries(uids)) {
+            UserSummaryDto user = byUid.get(((Number) row[0]).longValue());
+            user.getDepartmentIds().add(((Number) row[1]).longValue());
+            user.getDepartmentNames().add((String) row[2]);
+        }
+    }
+
+    private static void writeCsv(Writer writer, UserSummaryDto user) throws IOException {
+        writer.write(String.valueOf(user.getUid()));
+        writer.write(',');
+        writer.write(csvField(user.getUname()));
+        writer.write(',');
+        writer.write(csvField(user.getPhonenum()));
+        writer.write(',');
+        writer.write(user.getLoginPermission() == null ? "" : user.getLoginPermission().toString());
+        writer.write(',');
+        writer.write(user.getAdminPermission() == null ? "" : user.getAdminPermission().toString());
+        writer.write(',');
+        writer.write(user.getCreateTime() == null ? "" : TIME_FORMAT.format(user.getCreateTime()));
+        writer.write(',');
+        writer.write(user.getUpdateTime() == null ? "" : TIME_FORMAT.format(user.getUpdateTime()));
+        writer.write(',');
+        writer.write(csvField(String.join("|", user.getRoleNames())));
+        writer.write(',');
+        writer.write(csvField(String.join("|", user.getDepartmentNames())));
+        writer.write('\n');
+    }
+
+    // 以=、+、-、@、制表符或回车开头的值会被Excel当作公式，前面加单引号按文本显示；
+    // 含逗号、引号或换行的字段用双引号包裹，内部引号加倍
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
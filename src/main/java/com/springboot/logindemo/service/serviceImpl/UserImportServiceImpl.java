@@ -0,0 +1,448 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-14
+ * @description 用户批量导入服务实现
+ */
+package com.springboot.logindemo.service.serviceImpl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springboot.logindemo.dto.UserImportStatusDto;
+import com.springboot.logindemo.dto.UserImportStatusDto.RowError;
+import com.springboot.logindemo.repository.UserDao;
+import com.springboot.logindemo.service.UserImportService;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传的文件先写入临时文件（POSIX系统上仅属主可读写）再排队，排队中的任务不在堆上占用文件内容，
+ * 任务执行时从临时文件逐行解析，结束后删除临时文件。
+ * 批量导入分阶段执行：解析文件 → 在内存中去重（文件内重复，以及按文件中的手机号/用户名一次性查出的已存在账号）
+ * → 在专用ForkJoinPool上并行BCrypt → JDBC批量插入。哈希和插入按批流水执行，插入第n批时第n+1批在并行加密。
+ * 某批插入失败（如并发注册造成唯一索引冲突）时逐行重试，把失败原因记录到对应行。
+ * 任务在后台单线程中依次执行，进度通过getStatus查询。
+ */
+@Service
+public class UserImportServiceImpl implements UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportServiceImpl.class);
+
+    private static final String CSV = "csv";
+
+    private static final int BATCH_SIZE = 500;
+
+    // 查询已存在账号时IN列表的长度
+    private static final int LOOKUP_CHUNK = 1000;
+
+    // 单个任务最多保留的错误行数
+    private static final int MAX_ERRORS = 10000;
+
+    private static final String INSERT_SQL = "INSERT INTO user (uname, password, phonenum, login_permission, "
+            + "admin_permission, create_time, update_time) VALUES (?, ?, ?, 1, 0, ?, ?)";
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // 导入用的BCrypt线程池，默认只占一半CPU，给登录请求留出余量
+    private final ForkJoinPool hashPool;
+
+    private final ThreadPoolExecutor importExecutor;
+
+    private final Cache<String, Job> jobs = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofHours(24))
+            .maximumSize(1000)
+            .build();
+
+    public UserImportServiceImpl(PlatformTransactionManager transactionManager,
+            @Value("${user.import.hash-parallelism:0}") int hashParallelism,
+            @Value("${user.import.queue-capacity:4}") int queueCapacity) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int parallelism = hashParallelism > 0 ? hashParallelism
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.hashPool = new ForkJoinPool(parallelism);
+        this.importExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "user-import");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+        hashPool.shutdownNow();
+    }
+
+    @Override
+    public String submitImport(String format, InputStream content) {
+        Path file;
+        try {
+            file = Files.createTempFile("user-import-", ".tmp");
+        } catch (IOException e) {
+            throw new RuntimeException("保存导入文件失败：" + e.getMessage());
+        }
+        Job job = new Job(UUID.randomUUID().toString());
+        try {
+            Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+            jobs.put(job.id, job);
+            importExecutor.execute(() -> run(job, format, file));
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new RuntimeException("保存导入文件失败：" + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.id);
+            deleteQuietly(file);
+            throw new RuntimeException("导入任务过多，请稍后再试");
+        }
+        return job.id;
+    }
+
+    @Override
+    public UserImportStatusDto getStatus(String jobId) {
+        Job job = jobs.getIfPresent(jobId);
+        return job == null ? null : job.snapshot();
+    }
+
+    private void run(Job job, String format, Path file) {
+        job.startTime = LocalDateTime.now();
+        try {
+            job.state = "PARSING";
+            List<Row> rows = CSV.equalsIgnoreCase(format) ? parseCsv(job, file) : parseNdjson(job, file);
+            // 文件中有明文密码，解析完立即删除，不等任务结束
+            deleteQuietly(file);
+            job.total = rows.size() + job.failed.get();
+
+            job.state = "CHECKING";
+            rows = dedupe(job, rows);
+
+            job.state = "HASHING";
+            hashAndInsert(job, rows);
+
+            job.state = "DONE";
+        } catch (Exception e) {
+            logger.error("用户导入任务{}失败", job.id, e);
+            job.message = e.getMessage();
+            job.state = "FAILED";
+        } finally {
+            deleteQuietly(file);
+            job.endTime = LocalDateTime.now();
+        }
+    }
+
+    // 表头须包含phonenum、uname、password三列，顺序不限
+    private List<Row> parseCsv(Job job, Path file) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        try (BufferedReader reader = reader(file)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return rows;
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> columns = parseCsvLine(header);
+            int phoneIndex = indexOf(columns, "phonenum");
+            int unameIndex = indexOf(columns, "uname");
+            int passwordIndex = indexOf(columns, "password");
+            if (phoneIndex < 0 || unameIndex < 0 || passwordIndex < 0) {
+                throw new RuntimeException("CSV表头须包含phonenum,uname,password");
+            }
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = parseCsvLine(line);
+                addRow(job, rows, new Row(lineNumber, field(fields, phoneIndex), field(fields, unameIndex),
+                        field(fields, passwordIndex)));
+            }
+        }
+        return rows;
+    }
+
+    private List<Row> parseNdjson(Job job, Path file) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        try (BufferedReader reader = reader(file)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    addRow(job, rows, new Row(lineNumber, text(node, "phonenum"), text(node, "uname"),
+                            text(node, "password")));
+                } catch (IOException e) {
+                    job.error(new Row(lineNumber, null, null, null), "JSON格式错误");
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void addRow(Job job, List<Row> rows, Row row) {
+        if (isBlank(row.phonenum) || isBlank(row.uname) || isBlank(row.password)) {
+            job.error(row, "手机号、用户名和密码不能为空");
+            return;
+        }
+        rows.add(row);
+    }
+
+    // 先去掉文件内重复的手机号/用户名，再按批查出数据库中已存在的
+    private List<Row> dedupe(Job job, List<Row> rows) {
+        Set<String> phones = new HashSet<>();
+        Set<String> unames = new HashSet<>();
+        List<Row> unique = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (!phones.add(row.phonenum)) {
+                job.error(row, "文件中手机号重复");
+            } else if (!unames.add(row.uname)) {
+                job.error(row, "文件中用户名重复");
+            } else {
+                unique.add(row);
+            }
+        }
+
+        Set<String> existingPhones = new HashSet<>();
+        Set<String> existingUnames = new HashSet<>();
+        for (int from = 0; from < unique.size(); from += LOOKUP_CHUNK) {
+            List<Row> chunk = unique.subList(from, Math.min(from + LOOKUP_CHUNK, unique.size()));
+            existingPhones.addAll(userDao.findExistingPhonenums(chunk.stream().map(row -> row.phonenum).toList()));
+            existingUnames.addAll(userDao.findExistingUnames(chunk.stream().map(row -> row.uname).toList()));
+        }
+
+        List<Row> accepted = new ArrayList<>(unique.size());
+        for (Row row : unique) {
+            if (existingPhones.contains(row.phonenum)) {
+                job.error(row, "手机号已存在");
+            } else if (existingUnames.contains(row.uname)) {
+                job.error(row, "用户名已存在");
+            } else {
+                accepted.add(row);
+            }
+        }
+        return accepted;
+    }
+
+    // 插入第n批的同时在ForkJoinPool中并行加密第n+1批
+    private void hashAndInsert(Job job, List<Row> rows) throws InterruptedException, ExecutionException {
+        List<List<Row>> batches = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            batches.add(rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+        ForkJoinTask<?> pending = batches.isEmpty() ? null : hash(job, batches.get(0));
+        for (int i = 0; i < batches.size(); i++) {
+            pending.get();
+            pending = i + 1 < batches.size() ? hash(job, batches.get(i + 1)) : null;
+            job.state = "INSERTING";
+            insert(job, batches.get(i));
+        }
+    }
+
+    private ForkJoinTask<?> hash(Job job, List<Row> batch) {
+        return hashPool.submit(() -> batch.parallelStream().forEach(row -> {
+            row.hash = passwordEncoder.encode(row.password);
+            row.password = null;
+            job.hashed.incrementAndGet();
+        }));
+    }
+
+    private void insert(Job job, List<Row> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch,
+                    batch.size(), (ps, row) -> {
+                        ps.setString(1, row.uname);
+                        ps.setString(2, row.hash);
+                        ps.setString(3, row.phonenum);
+                        ps.setTimestamp(4, now);
+                        ps.setTimestamp(5, now);
+                    }));
+            job.imported.addAndGet(batch.size());
+        } catch (DataAccessException e) {
+            // 整批已回滚，逐行插入找出失败的行
+            for (Row row : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL, row.uname,
+                            row.hash, row.phonenum, now, now));
+                    job.imported.incrementAndGet();
+                } catch (DuplicateKeyException duplicate) {
+                    job.error(row, "手机号或用户名已存在");
+                } catch (DataAccessException rowError) {
+                    job.error(row, "保存失败：" + rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private static BufferedReader reader(Path file) throws IOException {
+        return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("删除导入临时文件{}失败", file, e);
+        }
+    }
+
+    // 支持双引号包裹的字段，字段内的双引号写作两个双引号
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+
+    private static int indexOf(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).toLowerCase(Locale.ROOT).equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    private static String text(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        return value == null || value.isNull() ? null : value.asText().trim();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static final class Row {
+        private final int line;
+        private final String phonenum;
+        private final String uname;
+        private volatile String password;
+        private volatile String hash;
+
+        Row(int line, String phonenum, String uname, String password) {
+            this.line = line;
+            this.phonenum = phonenum;
+            this.uname = uname;
+            this.password = password;
+        }
+    }
+
+    private static final class Job {
+        private final String id;
+        private volatile String state = "PENDING";
+        private volatile int total;
+        private final AtomicInteger hashed = new AtomicInteger();
+        private final AtomicInteger imported = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final ConcurrentLinkedQueue<RowError> errors = new ConcurrentLinkedQueue<>();
+        private volatile String message;
+        private volatile LocalDateTime startTime;
+        private volatile LocalDateTime endTime;
+
+        Job(String id) {
+            this.id = id;
+        }
+
+        void error(Row row, String reason) {
+            if (failed.incrementAndGet() <= MAX_ERRORS) {
+                errors.add(new RowError(row.line, row.phonenum, row.uname, reason));
+            }
+        }
+
+        UserImportStatusDto snapshot() {
+            UserImportStatusDto status = new UserImportStatusDto();
+            status.setJobId(id);
+            status.setState(state);
+            status.setTotal(total);
+            status.setHashed(hashed.get());
+            status.setImported(imported.get());
+            status.setFailed(failed.get());
+            status.setMessage(message);
+            status.setStartTime(startTime);
+            status.setEndTime(endTime);
+            status.setErrors(new ArrayList<>(errors));
+            return status;
+        }
+    }
+}
@@ -6,35 +6,50 @@
  */
 package com.springboot.logindemo.service.serviceImpl;
 
+import com.springboot.logindemo.cache.UserCache;
 import com.springboot.logindemo.domain.Department;
 import com.springboot.logindemo.domain.Role;
 import com.springboot.logindemo.domain.User;
 import com.springboot.logindemo.repository.DepartmentDao;
 import com.springboot.logindemo.repository.RoleDao;
+import com.springboot.logindemo.repository.UserCredentials;
 import com.springboot.logindemo.repository.UserDao;
+import com.springboot.logindemo.repository.UserRoleDao;
+import com.springboot.logindemo.security.AdminAuthorization;
+import com.springboot.logindemo.security.PasswordHasher;
+import com.springboot.logindemo.security.PasswordHasherBusyException;
+import com.springboot.logindemo.security.PermissionEpoch;
+import com.springboot.logindemo.security.PermissionIndex;
 import com.springboot.logindemo.service.UserService;
+import com.springboot.logindemo.dto.BulkRolesResultDto;
+import com.springboot.logindemo.dto.UserPageDto;
 import com.springboot.logindemo.dto.UserRolePermissionDto;
+import com.springboot.logindemo.dto.UserSummaryDto;
 import com.springboot.logindemo.utils.JwtUtils;
+import io.jsonwebtoken.Claims;
 import jakarta.annotation.Resource;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 @Service
 public class UserServiceImpl implements UserService {
 
-    @Autowired
-    private PasswordEncoder passwordEncoder; // 自动注入BCryptPasswordEncoder
+    @Resource // 管理员权限校验
+    private AdminAuthorization adminAuthorization;
+
+    @Resource // 在专用线程池中执行BCrypt
+    private PasswordHasher passwordHasher;
 
     @Resource // 帮助实例化UserDao对象
     private UserDao userDao;
@@ -43,32 +58,58 @@ public class UserServiceImpl implements UserService {
     private RoleDao roleDao;
 
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private UserCache userCache;
+
+    @Resource
+    private UserRoleDao userRoleDao;
 
     @Resource
     private DepartmentDao departmentDao;
 
+    @Resource
+    private PermissionIndex permissionIndex;
+
+    @Resource
+    private PermissionEpoch permissionEpoch;
+
+    // 批量角色操作中IN列表的长度
+    private static final int BULK_CHUNK_SIZE = 1000;
+
+    // 用户列表分页大小
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // 开启后直接使用令牌中的声明响应，纪元过期时才回源数据库
+    @Value("${jwt.stateless.enabled:false}")
+    private boolean statelessToken;
+
     @Override
-    public User loginService(String account, String password) {
-        // 根据电话号码和用户名查找用户
-        User user = userDao.findByPhonenum(account);
-        if (user == null) {
-            user = userDao.findByUname(account);
-        }
-        if (user == null) {
+    public User loginService(String account, String password, LongConsumer beforeLoad) {
+        // 一次查询按电话号码或用户名取出凭证，不加载角色权限
+        List<UserCredentials> credentials = userDao.findCredentialsByAccount(account);
+        if (credentials.isEmpty()) {
             return null; // 用户不存在
         }
+        UserCredentials credential = credentials.get(0);
         // 验证密码是否正确
-        boolean isValid = passwordEncoder.matches(password, user.getPassword());
+        boolean isValid = passwordHasher.matches(password, credential.getPassword());
         if (!isValid) {
             return null; // 密码错误
         }
-        return user;
+        // 加密强度配置变化后，在后台按新强度重新加密
+        if (passwordHasher.needsRehash(credential.getPassword())) {
+            String oldPassword = credential.getPassword();
+            passwordHasher.rehashAsync(password,
+                    newPassword -> userDao.updatePasswordHash(credential.getUid(), oldPassword, newPassword));
+        }
+        // 密码正确后再加载用户及签发令牌所需的角色
+        beforeLoad.accept(credential.getUid());
+        return userDao.findWithRolesByUid(credential.getUid()).orElse(null);
     }
 
     @Override
     @Transactional
-    public User registerService(String phoneNum, String password, String uname) {
+    public User registerService(String phoneNum, String password, String uname, LongConsumer afterCreate) {
         // 在事务中进行所有检查
         try {
             // 检查用户名是否存在
@@ -83,11 +124,15 @@ public class UserServiceImpl implements UserService {
             User newUser = new User();
             newUser.setUname(uname);
             newUser.setPhonenum(phoneNum);
-            String encryptedPassword = passwordEncoder.encode(password);
+            String encryptedPassword = passwordHasher.encode(password);
             newUser.setPassword(encryptedPassword);
 
             // 保存用户并立即返回保存后的用户对象
-            return userDao.save(newUser);
+            User saved = userDao.save(newUser);
+            afterCreate.accept(saved.getUid());
+            return saved;
+        } catch (PasswordHasherBusyException e) {
+            throw e;
         } catch (Exception e) {
             // 如果发生任何错误，事务会自动回滚
             throw new RuntimeException("注册失败：" + e.getMessage());
@@ -95,9 +140,14 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public User verifyService(String phonenum) {
-        User user = userDao.findByPhonenum(phonenum);
-        return user;
+    public User verifyService(String phonenum, LongConsumer beforeLoad) {
+        // 先只查uid，实体在读取纪元之后才进入持久化上下文
+        Long uid = userDao.findUidByPhonenum(phonenum);
+        if (uid == null) {
+            return null;
+        }
+        beforeLoad.accept(uid);
+        return userDao.findWithRolesByUid(uid).orElse(null);
     }
 
     @Override
@@ -107,7 +157,7 @@ public class UserServiceImpl implements UserService {
             return false;
         }
         // 对新密码进行加密
-        String encryptedPassword = passwordEncoder.encode(newPassword);
+        String encryptedPassword = passwordHasher.encode(newPassword);
         user.setPassword(encryptedPassword);
         user.setUpdateTime(LocalDateTime.now());// 保存更新时间
         userDao.save(user);
@@ -126,7 +176,7 @@ public class UserServiceImpl implements UserService {
             }
 
             // 验证操作者是否为管理员
-            validateAdminPermission(operatorPhoneNum);
+            adminAuthorization.validateAdmin(operatorPhoneNum);
 
             // 获取目标用户
             User targetUser = userDao.findByPhonenum(targetPhoneNum);
@@ -154,6 +204,7 @@ public class UserServiceImpl implements UserService {
             targetUser.setLoginPermission(loginPermission);
             targetUser.setUpdateTime(LocalDateTime.now());
             userDao.save(targetUser);
+            permissionEpoch.bumpUser(targetUser.getUid());
             return true;
         } catch (RuntimeException e) {
             throw e;
@@ -164,13 +215,15 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User findByAccount(String account) {
-        // 先通过手机号查找
-        User user = userDao.findByPhonenum(account);
-        if (user == null) {
-            // 如果找不到，再通过用户名查找
-            user = userDao.findByUname(account);
-        }
-        return user;
+        // 一次查询同时匹配手机号和用户名，手机号优先
+        List<User> users = userDao.findByAccount(account);
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    // 一次查询加载用户及其角色和权限
+    private User findWithPermissions(String account) {
+        List<User> users = userDao.findWithPermissionsByAccount(account);
+        return users.isEmpty() ? null : users.get(0);
     }
 
     @Override
@@ -193,54 +246,23 @@ public class UserServiceImpl implements UserService {
             // 获取用户的角色ID
             Set<Long> roleIds = getUserRoleIds(phoneNum, phoneNum);
 
-            // 检查是否包含管理员角色（假设角色名为"admin"是管理员角色）
-            boolean isAdmin = roleIds.stream()
-                    .anyMatch(roleId -> {
-                        Role role = roleDao.findById(roleId).orElse(null);
-                        return role != null && "admin".equals(role.getName());
-                    });
-
-            if (isAdmin) {
+            // 检查是否包含管理员角色，与其他管理员校验使用同一份管理员角色ID集合
+            if (adminAuthorization.containsAdminRole(roleIds)) {
                 return false; // 不允许删除管理员账号
             }
             userDao.delete(user);
+            permissionEpoch.bumpUser(user.getUid());
             return true;
         } catch (Exception e) {
             throw new RuntimeException("删除用户失败：" + e.getMessage());
         }
     }
 
-    private void validateAdminPermission(String adminPhoneNum) {
-        User admin = findByAccount(adminPhoneNum);
-        if (admin == null) {
-            throw new RuntimeException("用户不存在");
-        }
-
-        // 获取用户的角色ID
-        Set<Long> roleIds = getUserRoleIds(adminPhoneNum, adminPhoneNum);
-        if (roleIds.isEmpty()) {
-            throw new RuntimeException("用户没有任何角色");
-        }
-
-        // 检查是否包含管理员角色（检查角色名是否包含"admin"或"管理员"）
-        boolean isAdmin = roleIds.stream()
-                .anyMatch(roleId -> {
-                    Role role = roleDao.findById(roleId).orElse(null);
-                    return role != null && ("admin".equalsIgnoreCase(role.getName()) ||
-                            role.getName().contains("admin") ||
-                            role.getName().contains("管理员"));
-                });
-
-        if (!isAdmin) {
-            throw new RuntimeException("无管理员权限");
-        }
-    }
-
     // 获取用户的角色
     @Override
     public Set<Long> getUserRoleIds(String adminPhoneNum, String targetPhoneNum) {
         // validateAdminPermission(adminPhoneNum);
-        User user = findByAccount(targetPhoneNum);
+        User user = userCache.getByAccount(targetPhoneNum);
         if (user == null || user.getRoles() == null) {
             return Set.of();
         }
@@ -249,11 +271,63 @@ public class UserServiceImpl implements UserService {
                 .collect(Collectors.toSet());
     }
 
+    @Override
+    @Transactional
+    public BulkRolesResultDto bulkAssignRoles(String adminPhoneNum, Set<String> targetPhoneNums, Set<Long> roleIds) {
+        return bulkUpdateRoles(adminPhoneNum, targetPhoneNums, roleIds, true);
+    }
+
+    @Override
+    @Transactional
+    public BulkRolesResultDto bulkRemoveRoles(String adminPhoneNum, Set<String> targetPhoneNums, Set<Long> roleIds) {
+        return bulkUpdateRoles(adminPhoneNum, targetPhoneNums, roleIds, false);
+    }
+
+    // 只校验一次管理员，按IN查询解析用户，用集合语句写user_roles，不加载用户实体
+    private BulkRolesResultDto bulkUpdateRoles(String adminPhoneNum, Set<String> targetPhoneNums, Set<Long> roleIds,
+            boolean assign) {
+        adminAuthorization.validateAdmin(adminPhoneNum);
+
+        Set<Long> existingRoleIds = roleDao.findExistingIds(roleIds);
+        if (existingRoleIds.size() != roleIds.size()) {
+            Set<Long> invalidRoleIds = roleIds.stream()
+                    .filter(id -> !existingRoleIds.contains(id))
+                    .collect(Collectors.toSet());
+            throw new RuntimeException("以下角色ID无效: " + invalidRoleIds);
+        }
+
+        List<String> phones = new ArrayList<>(targetPhoneNums);
+        Map<String, Long> uidsByPhone = new HashMap<>();
+        for (int from = 0; from < phones.size(); from += BULK_CHUNK_SIZE) {
+            List<String> chunk = phones.subList(from, Math.min(from + BULK_CHUNK_SIZE, phones.size()));
+            for (Object[] row : userDao.findUidsByPhonenums(chunk)) {
+                uidsByPhone.put((String) row[1], ((Number) row[0]).longValue());
+            }
+        }
+        List<String> notFound = phones.stream()
+                .filter(phone -> !uidsByPhone.containsKey(phone))
+                .collect(Collectors.toList());
+
+        List<Long> uids = new ArrayList<>(uidsByPhone.values());
+        int changed = 0;
+        for (int from = 0; from < uids.size(); from += BULK_CHUNK_SIZE) {
+            List<Long> chunk = uids.subList(from, Math.min(from + BULK_CHUNK_SIZE, uids.size()));
+            changed += assign ? userRoleDao.insertIgnore(chunk, roleIds)
+                    : userRoleDao.deleteByUsersAndRoles(chunk, roleIds);
+        }
+
+        // 三者都在提交后才生效（用户缓存在提交前后各清除一次），避免并发请求在提交前用旧角色重建缓存
+        permissionIndex.invalidateUsers(uids);
+        permissionEpoch.bumpUsers(uids);
+        userCache.evictByIds(uids);
+        return new BulkRolesResultDto(uids.size(), changed, notFound);
+    }
+
     // 有管理员权限才可以为用户分配角色
     @Override
     @Transactional
     public boolean assignRoles(String adminPhoneNum, String targetPhoneNum, Set<Long> roleIds) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证目标用户是否存在
         User user = findByAccount(targetPhoneNum);
@@ -286,6 +360,8 @@ public class UserServiceImpl implements UserService {
             user.setRoles(currentRoles);
             user.setUpdateTime(LocalDateTime.now());
             userDao.save(user);
+            permissionIndex.invalidateUser(user.getUid());
+            permissionEpoch.bumpUser(user.getUid());
             return true;
         } catch (Exception e) {
             throw new RuntimeException("分配角色失败：" + e.getMessage());
@@ -296,7 +372,7 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public boolean removeRoles(String adminPhoneNum, String targetPhoneNum, Set<Long> roleIds) {
-        validateAdminPermission(adminPhoneNum);
+        adminAuthorization.validateAdmin(adminPhoneNum);
 
         // 验证目标用户是否存在
         User user = findByAccount(targetPhoneNum);
@@ -322,6 +398,8 @@ public class UserServiceImpl implements UserService {
             user.setRoles(currentRoles);
             user.setUpdateTime(LocalDateTime.now());
             userDao.save(user);
+            permissionIndex.invalidateUser(user.getUid());
+            permissionEpoch.bumpUser(user.getUid());
             return true;
         } catch (RuntimeException e) {
             throw e;
@@ -339,24 +417,9 @@ public class UserServiceImpl implements UserService {
      */
     private boolean hasPermission(String token, Long permissionId) {
         try {
-            // 使用token获取用户角色和权限信息
-            UserRolePermissionDto userRolePermission = getUserRolePermissionByToken(token);
-
-            // 遍历用户的所有角色和权限
-            for (Map<String, Object> role : userRolePermission.getRoles()) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> permissions = (List<Map<String, Object>>) role.get("permissions");
-                if (permissions != null) {
-                    // 检查是否有指定ID的权限
-                    for (Map<String, Object> permission : permissions) {
-                        Long currentPermissionId = ((Number) permission.get("id")).longValue();
-                        if (currentPermissionId.equals(permissionId)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
+            // 使用编译后的权限位图检查，不再构建角色权限DTO
+            Long uid = Long.parseLong(JwtUtils.getUserIdFromToken(token));
+            return permissionIndex.hasPermission(uid, permissionId);
         } catch (Exception e) {
             throw new RuntimeException("检查用户权限失败：" + e.getMessage());
         }
@@ -371,22 +434,24 @@ public class UserServiceImpl implements UserService {
      */
     private boolean hasRole(String token, Long roleId) {
         try {
-            // 使用token获取用户角色和权限信息
-            UserRolePermissionDto userRolePermission = getUserRolePermissionByToken(token);
-
-            // 遍历用户的所有角色
-            for (Map<String, Object> role : userRolePermission.getRoles()) {
-                Long currentRoleId = ((Number) role.get("id")).longValue();
-                if (currentRoleId.equals(roleId)) {
-                    return true;
-                }
-            }
-            return false;
+            Long uid = Long.parseLong(JwtUtils.getUserIdFromToken(token));
+            return permissionIndex.hasRole(uid, roleId);
         } catch (Exception e) {
             throw new RuntimeException("检查用户角色失败：" + e.getMessage());
         }
     }
 
+    @Override
+    public boolean isAdmin(String token) {
+        Long uid;
+        try {
+            uid = Long.parseLong(JwtUtils.getUserIdFromToken(token));
+        } catch (RuntimeException e) {
+            return false;
+        }
+        return permissionIndex.hasRole(uid, 1L);
+    }
+
     /**
      * 检查用户是否拥有指定角色 (通过账号直接查询)
      * 
@@ -398,7 +463,7 @@ public class UserServiceImpl implements UserService {
     public boolean hasRoleByAccount(String account, Long roleId) {
         try {
             // 查找用户
-            User user = findByAccount(account);
+            User user = userCache.getByAccount(account);
             if (user == null) {
                 return false;
             }
@@ -433,26 +498,65 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public UserPageDto listUsers(String token, Long cursor, Integer size, Integer loginPermission,
+            Long departmentId, boolean includeRoles) {
+        if (!hasRole(token, 1L)) {
+            throw new RuntimeException("没有查看所有用户的权限");
+        }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // 多取一条判断是否还有下一页
+        List<UserSummaryDto> users = userDao.findSummariesAfter(cursor == null ? 0L : cursor, loginPermission,
+                departmentId, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = users.size() > pageSize;
+        if (hasMore) {
+            users = new ArrayList<>(users.subList(0, pageSize));
+        }
+        if (includeRoles && !users.isEmpty()) {
+            fillRoles(users);
+        }
+        Long nextCursor = hasMore ? users.get(users.size() - 1).getUid() : null;
+        return new UserPageDto(users, nextCursor);
+    }
+
+    // 一次查询填充整页用户的角色
+    private void fillRoles(List<UserSummaryDto> users) {
+        Map<Long, UserSummaryDto> byUid = new HashMap<>();
+        for (UserSummaryDto user : users) {
+            user.setRoleIds(new ArrayList<>());
+            user.setRoleNames(new ArrayList<>());
+            byUid.put(user.getUid(), user);
+        }
+        for (Object[] row : userDao.findRoleSummaries(new ArrayList<>(byUid.keySet()))) {
+            UserSummaryDto user = byUid.get(((Number) row[0]).longValue());
+            user.getRoleIds().add(((Number) row[1]).longValue());
+            user.getRoleNames().add((String) row[2]);
+        }
+    }
+
     @Override
     public Map<String, Object> getUserInfoByToken(String token) {
         try {
-            // 从token中获取用户ID
-            String uid = String.valueOf(JwtUtils.getUserIdFromToken(token));
-            if (uid == null || uid.equals("null")) {
+            // 校验token并取出声明
+            Claims claims = JwtUtils.verifyToken(token);
+            String uid = claims.getSubject();
+            if (uid == null) {
                 throw new RuntimeException("无效的token");
             }
 
-            // 从数据库获取最新的用户信息
-            User user = userDao.findById(Long.parseLong(uid)).orElse(null);
+            // 声明未过期时直接返回，不访问数据库；纪元通常命中本地缓存
+            if (statelessToken && JwtUtils.hasUserClaims(claims)
+                    && permissionEpoch.isFresh(Long.parseLong(uid), JwtUtils.getEpoch(claims))) {
+                return getUserInfoFromClaims(claims);
+            }
+
+            // 从用户缓存获取用户信息，缓存在用户保存时失效
+            User user = userCache.getByUid(Long.parseLong(uid));
             if (user == null) {
                 throw new RuntimeException("用户不存在");
             }
 
-            // 更新Redis缓存
-            String redisKey = "user:" + uid;
-            redisTemplate.delete(redisKey); // 删除旧的缓存
-            redisTemplate.opsForValue().set(redisKey, user, 24, TimeUnit.HOURS);
-
             // 构建返回的用户信息
             Map<String, Object> userInfo = new HashMap<>();
             userInfo.put("uid", user.getUid());
@@ -462,7 +566,7 @@ public class UserServiceImpl implements UserService {
             userInfo.put("adminPermission", user.getAdminPermission());
             userInfo.put("createTime", user.getCreateTime());
             userInfo.put("updateTime", user.getUpdateTime());
-            userInfo.put("roles", user.getRoles());
+            userInfo.put("roles", userCache.getRoles(user));
 
             return userInfo;
         } catch (Exception e) {
@@ -470,6 +574,27 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    // 根据令牌声明构建用户信息，角色只返回ID
+    private Map<String, Object> getUserInfoFromClaims(Claims claims) {
+        Map<String, Object> userInfo = new HashMap<>();
+        userInfo.put("uid", Long.parseLong(claims.getSubject()));
+        userInfo.put("uname", claims.get(JwtUtils.CLAIM_UNAME));
+        userInfo.put("phonenum", claims.get(JwtUtils.CLAIM_PHONENUM));
+        userInfo.put("loginPermission", claims.get(JwtUtils.CLAIM_LOGIN_PERMISSION));
+        userInfo.put("roleIds", JwtUtils.getRoleIds(claims));
+        return userInfo;
+    }
+
+    @Override
+    public List<Long> getUserPermissionIds(String token) {
+        try {
+            Long uid = Long.parseLong(JwtUtils.getUserIdFromToken(token));
+            return permissionIndex.getPermissionIds(uid);
+        } catch (Exception e) {
+            throw new RuntimeException("获取用户权限失败：" + e.getMessage());
+        }
+    }
+
     @Override
     @Transactional(readOnly = true)
     public UserRolePermissionDto getUserRolePermissionByToken(String token) {
@@ -483,7 +608,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // 查询用户
-        User user = findByAccount(phoneNum);
+        User user = findWithPermissions(phoneNum);
         if (user == null) {
             throw new RuntimeException("用户不存在");
         }
@@ -511,7 +636,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // 查询用户
-        User user = findByAccount(phoneNum);
+        User user = findWithPermissions(phoneNum);
         if (user == null) {
             throw new RuntimeException("用户不存在");
         }
@@ -0,0 +1,122 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 阿里云短信服务商
+ */
+package com.springboot.logindemo.sms;
+
+import com.aliyuncs.DefaultAcsClient;
+import com.aliyuncs.IAcsClient;
+import com.aliyuncs.dysmsapi.model.v20170525.SendBatchSmsRequest;
+import com.aliyuncs.dysmsapi.model.v20170525.SendBatchSmsResponse;
+import com.aliyuncs.dysmsapi.model.v20170525.SendSmsRequest;
+import com.aliyuncs.dysmsapi.model.v20170525.SendSmsResponse;
+import com.aliyuncs.exceptions.ClientException;
+import com.aliyuncs.exceptions.ServerException;
+import com.aliyuncs.profile.DefaultProfile;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 阿里云短信。客户端在启动时创建一次并复用（DefaultAcsClient线程安全，内部复用HTTP连接），
+ * 同一模板的多条短信通过SendBatchSms一次发送，其中任一号码无效时整批被拒绝。
+ */
+@Component
+@ConditionalOnProperty(name = "sms.provider", havingValue = "aliyun", matchIfMissing = true)
+public class AliyunSmsProvider implements SmsProvider {
+
+    private static final String REGION = "cn-qingdao";
+
+    // SendBatchSms单次最多100个号码
+    private static final int BATCH_LIMIT = 100;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final IAcsClient client;
+
+    public AliyunSmsProvider(@Value("${aliyun.accessKeyId}") String accessKeyId,
+            @Value("${aliyun.accessSecret}") String accessSecret) {
+        DefaultProfile profile = DefaultProfile.getProfile(REGION, accessKeyId.trim(), accessSecret.trim());
+        this.client = new DefaultAcsClient(profile);
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return BATCH_LIMIT;
+    }
+
+    @Override
+    public void send(List<SmsMessage> messages) throws SmsSendException {
+        // 调用方已按模板分组，一次调用只发一个请求
+        if (messages.size() == 1) {
+            sendOne(messages.get(0));
+        } else {
+            sendBatch(messages.get(0).templateCode(), messages);
+        }
+    }
+
+    private void sendOne(SmsMessage message) throws SmsSendException {
+        SendSmsRequest request = new SendSmsRequest();
+        request.setSysRegionId(REGION);
+        request.setPhoneNumbers(message.phoneNumber());
+        request.setSignName(message.signName());
+        request.setTemplateCode(message.templateCode());
+        request.setTemplateParam(message.param());
+        try {
+            SendSmsResponse response = client.getAcsResponse(request);
+            checkCode(response.getCode(), response.getMessage());
+        } catch (ClientException e) {
+            throw translate(e);
+        }
+    }
+
+    private void sendBatch(String templateCode, List<SmsMessage> messages) throws SmsSendException {
+        List<String> phones = new ArrayList<>(messages.size());
+        List<String> signs = new ArrayList<>(messages.size());
+        List<String> params = new ArrayList<>(messages.size());
+        for (SmsMessage message : messages) {
+            phones.add(message.phoneNumber());
+            signs.add(message.signName());
+            params.add(message.param());
+        }
+        SendBatchSmsRequest request = new SendBatchSmsRequest();
+        request.setSysRegionId(REGION);
+        request.setTemplateCode(templateCode);
+        try {
+            request.setPhoneNumberJson(MAPPER.writeValueAsString(phones));
+            request.setSignNameJson(MAPPER.writeValueAsString(signs));
+            // 模板参数本身是JSON对象，拼成JSON数组
+            request.setTemplateParamJson("[" + String.join(",", params) + "]");
+        } catch (JsonProcessingException e) {
+            throw new SmsSendException("短信参数序列化失败", false, e);
+        }
+        try {
+            SendBatchSmsResponse response = client.getAcsResponse(request);
+            checkCode(response.getCode(), response.getMessage());
+        } catch (ClientException e) {
+            throw translate(e);
+        }
+    }
+
+    private static void checkCode(String code, String message) throws SmsSendException {
+        if (!"OK".equals(code)) {
+            // 流控类错误稍后重试可能成功，其余业务错误（号码、签名、模板等）重试无意义
+            boolean retryable = code != null && (code.contains("LIMIT") || code.startsWith("SYSTEM"));
+            throw new SmsSendException("短信发送失败：" + code + " " + message, retryable);
+        }
+    }
+
+    private static SmsSendException translate(ClientException e) {
+        // 服务端异常和网络异常可重试，客户端参数错误不可重试
+        boolean retryable = e instanceof ServerException || e.getErrCode() == null
+                || e.getErrCode().startsWith("SDK.") || e.getErrCode().contains("Throttling");
+        return new SmsSendException("短信发送失败：" + e.getErrCode() + " " + e.getErrMsg(), retryable, e);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 本地模拟短信服务商
+ */
+package com.springboot.logindemo.sms;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 不调用任何外部服务的短信服务商，用于离线开发和压测。
+ * 按配置模拟每次请求的延迟和失败率，验证码只写入日志。
+ */
+@Component
+@ConditionalOnProperty(name = "sms.provider", havingValue = "local")
+public class LocalSmsProvider implements SmsProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalSmsProvider.class);
+
+    private final long latencyMillis;
+
+    private final double failureRate;
+
+    private final int batchSize;
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    public LocalSmsProvider(@Value("${sms.local.latency-ms:50}") long latencyMillis,
+            @Value("${sms.local.failure-rate:0}") double failureRate,
+            @Value("${sms.local.batch-size:100}") int batchSize) {
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void send(List<SmsMessage> messages) throws SmsSendException {
+        requests.incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SmsSendException("短信发送被中断", true, e);
+            }
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new SmsSendException("模拟短信发送失败", true);
+        }
+        for (SmsMessage message : messages) {
+            logger.info("模拟发送短信 {} 模板{} 参数{}", message.phoneNumber(), message.templateCode(),
+                    message.param());
+        }
+        sent.addAndGet(messages.size());
+    }
+
+    // 已成功发送的短信条数
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    // 调用次数（一次调用可包含多条短信）
+    public long getRequestCount() {
+        return requests.get();
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 异步批量短信发送
+ */
+package com.springboot.logindemo.sms;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 短信先进入进程内有界队列，由若干工作线程取出后交给SmsProvider发送，请求线程不等待服务商响应。
+ * 工作线程每次取出队列中已有的短信（不超过服务商的批量上限），按模板分组后每组一次发送，各组的结果互不影响；
+ * 整组因不可重试的错误被拒绝时（如其中一个号码无效）改为逐条发送，只放弃出错的短信。
+ * 可重试的失败按指数退避加随机抖动重新入队，超过重试次数后丢弃并记录日志。
+ * 作为MeterBinder注册到Micrometer：sms.dispatch按结果记录每次发送请求的耗时，另有队列长度和各项计数。
+ */
+@Component
+public class SmsDispatcher implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsDispatcher.class);
+
+    private final SmsProvider provider;
+
+    private final BlockingQueue<Pending> queue;
+
+    private final int workerCount;
+
+    private final int maxRetries;
+
+    private final long baseBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sms-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+
+    private volatile boolean running = true;
+
+    private volatile MeterRegistry meterRegistry;
+
+    public SmsDispatcher(SmsProvider provider,
+            @Value("${sms.queue-capacity:10000}") int queueCapacity,
+            @Value("${sms.workers:4}") int workerCount,
+            @Value("${sms.max-retries:3}") int maxRetries,
+            @Value("${sms.retry.base-backoff-ms:200}") long baseBackoffMillis,
+            @Value("${sms.retry.max-backoff-ms:5000}") long maxBackoffMillis) {
+        this.provider = provider;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.workerCount = workerCount;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 1; i <= workerCount; i++) {
+            Thread worker = new Thread(this::work, "sms-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 短信入队，立即返回
+     *
+     * @param message 短信
+     * @return 队列已满返回false
+     */
+    public boolean submit(SmsMessage message) {
+        return queue.offer(new Pending(message, 0));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("sms.queue.size", queue, BlockingQueue::size)
+                .description("等待发送的短信数").register(registry);
+        FunctionCounter.builder("sms.sent", sent, LongAdder::sum)
+                .description("发送成功的短信数").register(registry);
+        FunctionCounter.builder("sms.failed", failed, LongAdder::sum)
+                .description("重试后仍失败而被丢弃的短信数").register(registry);
+        FunctionCounter.builder("sms.retried", retried, LongAdder::sum)
+                .description("重新入队的短信数").register(registry);
+    }
+
+    private void work() {
+        int maxBatch = Math.max(1, provider.maxBatchSize());
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            dispatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void dispatch(List<Pending> batch) {
+        // 批量接口要求同一模板
+        Map<String, List<Pending>> byTemplate = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byTemplate.computeIfAbsent(pending.message().templateCode(), key -> new ArrayList<>()).add(pending);
+        }
+        for (List<Pending> group : byTemplate.values()) {
+            SmsSendException error = send(group);
+            if (error == null) {
+                continue;
+            }
+            if (!error.isRetryable() && group.size() > 1) {
+                for (Pending pending : group) {
+                    SmsSendException single = send(List.of(pending));
+                    if (single != null) {
+                        retryOrDrop(pending, single);
+                    }
+                }
+            } else {
+                for (Pending pending : group) {
+                    retryOrDrop(pending, error);
+                }
+            }
+        }
+    }
+
+    // 一次请求发送同一模板的短信，成功返回null
+    private SmsSendException send(List<Pending> group) {
+        List<SmsMessage> messages = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            messages.add(pending.message());
+        }
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            provider.send(messages);
+            sent.add(messages.size());
+            return null;
+        } catch (SmsSendException e) {
+            outcome = "failure";
+            return e;
+        } catch (RuntimeException e) {
+            outcome = "failure";
+            return new SmsSendException(e.getMessage(), true, e);
+        } finally {
+            MeterRegistry registry = meterRegistry;
+            if (registry != null) {
+                Timer.builder("sms.dispatch")
+                        .description("一次短信发送请求的耗时")
+                        .tag("outcome", outcome)
+                        .register(registry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void retryOrDrop(Pending pending, SmsSendException e) {
+        if (!e.isRetryable() || pending.attempt() >= maxRetries || !running) {
+            failed.increment();
+            logger.error("短信发送失败，已放弃 {}: {}", pending.message().phoneNumber(), e.getMessage());
+            return;
+        }
+        retried.increment();
+        Pending next = new Pending(pending.message(), pending.attempt() + 1);
+        long delay = backoff(next.attempt());
+        retryScheduler.schedule(() -> {
+            if (!queue.offer(next)) {
+                failed.increment();
+                logger.error("短信队列已满，放弃重试 {}", next.message().phoneNumber());
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // 指数退避加全抖动：在[0, min(max, base * 2^attempt)]中随机取值，避免重试集中到同一时刻
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private record Pending(SmsMessage message, int attempt) {
+    }
+}
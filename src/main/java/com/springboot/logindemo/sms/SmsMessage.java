@@ -0,0 +1,18 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 待发送的短信
+ */
+package com.springboot.logindemo.sms;
+
+/**
+ * 一条待发送的短信，param为模板参数JSON
+ *
+ * @param phoneNumber  手机号
+ * @param signName     短信签名
+ * @param templateCode 短信模板
+ * @param param        模板参数
+ */
+public record SmsMessage(String phoneNumber, String signName, String templateCode, String param) {
+}
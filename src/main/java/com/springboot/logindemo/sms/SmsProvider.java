@@ -0,0 +1,30 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 短信服务商接口
+ */
+package com.springboot.logindemo.sms;
+
+import java.util.List;
+
+/**
+ * 短信服务商。由SmsDispatcher的工作线程调用，一次传入同一模板的不超过maxBatchSize条短信，
+ * 服务商支持批量接口时应在一次请求中发送。
+ */
+public interface SmsProvider {
+
+    /**
+     * 发送一批同一模板的短信，失败时抛出异常。可重试的失败整批重新入队；
+     * 不可重试的失败由调用方改为逐条发送，以区分出错的短信
+     *
+     * @param messages 短信列表
+     * @throws SmsSendException 发送失败
+     */
+    void send(List<SmsMessage> messages) throws SmsSendException;
+
+    // 单次请求最多发送的短信条数
+    default int maxBatchSize() {
+        return 1;
+    }
+}
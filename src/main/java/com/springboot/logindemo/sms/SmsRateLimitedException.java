@@ -0,0 +1,17 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 短信发送过于频繁
+ */
+package com.springboot.logindemo.sms;
+
+/**
+ * 同一手机号发送短信超过频率限制
+ */
+public class SmsRateLimitedException extends RuntimeException {
+
+    public SmsRateLimitedException() {
+        super("验证码发送过于频繁，请稍后再试");
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 按手机号限制短信发送频率
+ */
+package com.springboot.logindemo.sms;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 每个手机号两次发送之间至少间隔minInterval，且一小时内不超过maxPerHour条。
+ * 发送记录按手机号保存在进程内缓存中，一小时未发送的号码自动淘汰。
+ */
+@Component
+public class SmsRateLimiter {
+
+    private static final long WINDOW_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final long minIntervalMillis;
+
+    private final int maxPerHour;
+
+    // 手机号 -> 一小时内的发送时间（升序）
+    private final Cache<String, long[]> history = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMillis(WINDOW_MILLIS))
+            .maximumSize(100_000)
+            .build();
+
+    public SmsRateLimiter(@Value("${sms.rate.min-interval-seconds:60}") long minIntervalSeconds,
+            @Value("${sms.rate.max-per-hour:10}") int maxPerHour) {
+        this.minIntervalMillis = minIntervalSeconds * 1000;
+        this.maxPerHour = maxPerHour;
+    }
+
+    /**
+     * 尝试为手机号占用一次发送额度
+     *
+     * @param phoneNumber 手机号
+     * @return 允许发送返回true
+     */
+    public boolean tryAcquire(String phoneNumber) {
+        return tryAcquire(phoneNumber, System.currentTimeMillis());
+    }
+
+    boolean tryAcquire(String phoneNumber, long now) {
+        boolean[] allowed = new boolean[1];
+        // compute对同一手机号原子执行，并发请求不会同时通过
+        history.asMap().compute(phoneNumber, (phone, sends) -> {
+            long[] recent = prune(sends, now);
+            if (recent.length > 0 && now - recent[recent.length - 1] < minIntervalMillis) {
+                return recent;
+            }
+            if (recent.length >= maxPerHour) {
+                return recent;
+            }
+            allowed[0] = true;
+            long[] updated = Arrays.copyOf(recent, recent.length + 1);
+            updated[recent.length] = now;
+            return updated;
+        });
+        return allowed[0];
+    }
+
+    private static long[] prune(long[] sends, long now) {
+        if (sends == null) {
+            return new long[0];
+        }
+        int from = 0;
+        while (from < sends.length && now - sends[from] >= WINDOW_MILLIS) {
+            from++;
+        }
+        return from == 0 ? sends : Arrays.copyOfRange(sends, from, sends.length);
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-10
+ * @description 短信发送失败
+ */
+package com.springboot.logindemo.sms;
+
+/**
+ * 短信发送失败。网络错误、服务端错误等可重试，号码或模板错误等不可重试
+ */
+public class SmsSendException extends Exception {
+
+    private final boolean retryable;
+
+    public SmsSendException(String message, boolean retryable, Throwable cause) {
+        super(message, cause);
+        this.retryable = retryable;
+    }
+
+    public SmsSendException(String message, boolean retryable) {
+        this(message, retryable, null);
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
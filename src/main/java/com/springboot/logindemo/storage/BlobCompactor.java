@@ -0,0 +1,166 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 定期清理不再被引用的上传文件
+ */
+package com.springboot.logindemo.storage;
+
+import com.springboot.logindemo.dao.FileBlobDao;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 两轮清理：先按file_blobs表删除引用计数为0且超过保留期的内容；
+ * 再扫描分片目录，删除没有登记记录的文件（登记所在事务回滚）和incoming目录中残留的临时文件。
+ * 上传后从未提交认证的文件同样在保留期后清除：单独调用/api/authentication/upload得到的只是临时链接，
+ * 内容不会被任何认证记录引用。为保证临时链接在内容被清除前已经失效，签名链接的最长有效期
+ * （file.access.url-ttl-minutes的2倍）不能超过保留期，否则启动失败。
+ */
+@Component
+public class BlobCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobCompactor.class);
+
+    private static final int PAGE_SIZE = 500;
+
+    private final BlobStore blobStore;
+
+    private final FileBlobDao fileBlobDao;
+
+    private final boolean enabled;
+
+    private final long intervalMinutes;
+
+    private final Duration grace;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blob-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BlobCompactor(BlobStore blobStore, FileBlobDao fileBlobDao,
+            @Value("${file.blob.compactor.enabled:true}") boolean enabled,
+            @Value("${file.blob.compact-interval-minutes:60}") long intervalMinutes,
+            @Value("${file.blob.orphan-grace-hours:24}") long graceHours,
+            @Value("${file.access.url-ttl-minutes:30}") long urlTtlMinutes) {
+        if (Duration.ofMinutes(urlTtlMinutes * 2).compareTo(Duration.ofHours(graceHours)) > 0) {
+            throw new IllegalStateException("file.access.url-ttl-minutes的2倍不能超过file.blob.orphan-grace-hours，"
+                    + "否则未被引用的文件清除后临时链接仍然有效");
+        }
+        this.blobStore = blobStore;
+        this.fileBlobDao = fileBlobDao;
+        this.enabled = enabled;
+        this.intervalMinutes = intervalMinutes;
+        this.grace = Duration.ofHours(graceHours);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::runSafely, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 执行一次清理
+     *
+     * @param now 当前时间，保留期从这里往前算
+     * @return 删除的内容数
+     */
+    public int compact(LocalDateTime now) {
+        LocalDateTime cutoff = now.minus(grace);
+        int deleted = 0;
+        while (true) {
+            List<String> orphans = fileBlobDao.findOrphans(cutoff, PageRequest.of(0, PAGE_SIZE));
+            int removed = 0;
+            for (String sha256 : orphans) {
+                if (blobStore.deleteIfOrphan(sha256, cutoff)) {
+                    removed++;
+                }
+            }
+            deleted += removed;
+            // 未删除的记录已被校正或重新引用，不再满足条件；整页都没删掉时停止，避免反复处理同一页
+            if (orphans.size() < PAGE_SIZE || removed == 0) {
+                break;
+            }
+        }
+        long cutoffMillis = cutoff.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        deleted += sweepUnregistered(cutoffMillis);
+        sweepIncoming(cutoffMillis);
+        return deleted;
+    }
+
+    private void runSafely() {
+        try {
+            int deleted = compact(LocalDateTime.now());
+            if (deleted > 0) {
+                logger.info("清理了{}份不再被引用的上传文件", deleted);
+            }
+        } catch (RuntimeException e) {
+            logger.error("清理上传文件失败", e);
+        }
+    }
+
+    // 分片目录中修改时间早于截止时间、且没有登记记录的内容文件
+    private int sweepUnregistered(long cutoffMillis) {
+        Path root = blobStore.root();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.find(root, 3, (path, attributes) -> attributes.isRegularFile()
+                && attributes.lastModifiedTime().toMillis() < cutoffMillis
+                && BlobStore.isSha256(path.getFileName().toString()))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String sha256 = file.getFileName().toString();
+                if (file.equals(blobStore.blobPath(sha256)) && blobStore.deleteIfUnregistered(sha256, cutoffMillis)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("扫描上传目录失败: {}", e.getMessage());
+        }
+        return deleted;
+    }
+
+    // 写入中途失败的临时文件由StreamingFileWriter删除，这里只兜底进程崩溃时留下的文件
+    private void sweepIncoming(long cutoffMillis) {
+        Path incoming = blobStore.incomingDirectory();
+        if (!Files.isDirectory(incoming)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(incoming)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoffMillis) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理临时上传文件失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 按内容寻址的上传文件下载处理器
+ */
+package com.springboot.logindemo.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 处理 /files/blobs/ab/cd/{sha256}.ext 及其缩略图{sha256}-thumb.jpg、预览图{sha256}-preview.jpg。路径由内容摘要决定，同一路径的内容永远不变，因此：
+ * <ul>
+ *     <li>ETag直接使用摘要（强校验），If-None-Match命中返回304，不读文件；</li>
+ *     <li>Cache-Control为private且immutable，只允许浏览器缓存到签名过期为止，CDN和代理不缓存；</li>
+ *     <li>只有PDF、JPG和PNG按对应类型返回，其他扩展名一律为application/octet-stream（附件和nosniff由FileAccessInterceptor设置）；</li>
+ *     <li>支持单段Range请求，If-Range与ETag不一致时返回完整内容；</li>
+ *     <li>Tomcat支持sendfile时由连接器直接从文件发送到套接字，否则用FileChannel.transferTo分块写出。</li>
+ * </ul>
+ * 多段Range请求按规范可以忽略，返回完整内容。
+ */
+@Component
+public class BlobFileHandler implements HttpRequestHandler {
+
+    // Tomcat的sendfile请求属性，见org.apache.coyote.Constants和DefaultServlet
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_CONTROL = "private, max-age=%d, immutable";
+
+    private static final long TRANSFER_CHUNK_BYTES = 64 * 1024;
+
+    // 相对于/files/blobs/的路径，分片目录必须与摘要前缀一致
+    private static final Pattern BLOB_PATH = Pattern.compile(
+            "([0-9a-f]{2})/([0-9a-f]{2})/(\\1\\2[0-9a-f]{60})(-thumb|-preview)?(\\.[A-Za-z0-9]{1,10})?");
+
+    private final BlobStore blobStore;
+
+    private final long sendfileThreshold;
+
+    public BlobFileHandler(BlobStore blobStore,
+            @Value("${file.blob.sendfile-threshold-bytes:49152}") long sendfileThreshold) {
+        this.blobStore = blobStore;
+        this.sendfileThreshold = sendfileThreshold;
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean head = "HEAD".equals(request.getMethod());
+        if (!head && !"GET".equals(request.getMethod())) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        Object pathWithinMapping = request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        Matcher matcher = BLOB_PATH.matcher(pathWithinMapping == null ? "" : pathWithinMapping.toString());
+        if (!matcher.matches()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String sha256 = matcher.group(3);
+        String variant = matcher.group(4) == null ? "" : matcher.group(4);
+        String fileName = sha256 + variant + (matcher.group(5) == null ? "" : matcher.group(5));
+        Path file = blobStore.blobPath(sha256).resolveSibling(fileName);
+
+        // 缩略图和预览图由原文件内容决定，同样不会变化
+        String etag = "\"" + sha256 + variant + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CACHE_CONTROL.formatted(FileAccessInterceptor.remainingSeconds(request)));
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            if (Files.exists(file)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            response.setContentType(FileAccessInterceptor.inlineMediaType(fileName)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            long start = 0;
+            long end = length - 1;
+            HttpRange range = head ? null : requestedRange(request, etag);
+            if (range != null) {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+                // 起始位置超出文件长度（含空文件）时无法满足
+                if (start >= length || start > end) {
+                    unsatisfiable(response, length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+            long count = end - start + 1;
+            response.setContentLengthLong(count);
+            if (head || count == 0) {
+                return;
+            }
+
+            if (count >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                // 连接器在响应结束后用sendfile发送，文件内容不经过JVM堆
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, Math.min(remaining, TRANSFER_CHUNK_BYTES), out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        } catch (NoSuchFileException e) {
+            response.reset();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    // 只处理单段Range；格式错误、多段或If-Range不匹配时返回null，按完整内容响应
+    private static HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.trim().equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // If-None-Match按弱比较，W/前缀不影响匹配
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void unsatisfiable(HttpServletResponse response, long length) {
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        response.setContentLength(0);
+    }
+}
@@ -0,0 +1,380 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 按内容寻址、去重的上传文件存储
+ */
+package com.springboot.logindemo.storage;
+
+import com.springboot.logindemo.dao.FileBlobDao;
+import com.springboot.logindemo.domain.FileBlob;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 上传文件按SHA-256存放在 {file.upload.path}/blobs/ab/cd/{sha256}，ab、cd为摘要的前两个字节，
+ * 避免单个目录下文件过多。带扩展名的访问路径 {sha256}.pdf 是指向同一文件的硬链接（不支持硬链接时复制），
+ * 静态资源映射据此返回正确的Content-Type。相同内容再次上传时丢弃新写入的副本，只刷新保留期。
+ * <p>
+ * file_blobs表记录每份内容被认证详情表引用的次数；未被引用且超过保留期的内容由BlobCompactor清除。
+ * 同一份内容的落盘、登记和清除在同一把锁下进行（按摘要分段加锁），清除在记录删除提交后才删文件并持有锁直到事务结束，
+ * 单节点内不会删掉刚上传的文件，事务回滚时文件仍在；登记用单条upsert语句，跨节点的并发上传也不会主键冲突。
+ */
+@Component
+public class BlobStore implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStore.class);
+
+    static final String BLOB_DIRECTORY = "blobs";
+
+    private static final String INCOMING_DIRECTORY = "incoming";
+
+    // 派生文件与原文件放在同一目录，命名为{sha256}-thumb.jpg、{sha256}-preview.jpg，清除原文件时一并删除
+    static final String THUMBNAIL_SUFFIX = "-thumb.jpg";
+    static final String PREVIEW_SUFFIX = "-preview.jpg";
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    // 访问路径中的摘要，如 .../blobs/ab/cd/{sha256}.pdf
+    private static final Pattern BLOB_URL = Pattern.compile(
+            "/" + BLOB_DIRECTORY + "/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})(\\.[A-Za-z0-9]{1,10})?$");
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Resource
+    private StreamingFileWriter fileWriter;
+
+    @Resource
+    private FileBlobDao fileBlobDao;
+
+    private final Path root;
+
+    private final String accessPath;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder deduplicatedBytes = new LongAdder();
+
+    public BlobStore(@Value("${file.upload.path}") String uploadPath,
+            @Value("${file.access.path}") String accessPath) {
+        this.root = Paths.get(uploadPath, BLOB_DIRECTORY);
+        this.accessPath = accessPath;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 流式保存上传内容，内容已存在时复用已有文件
+     *
+     * @param in        上传内容，结束后关闭
+     * @param extension 扩展名（含点，可为空字符串），调用方需已校验
+     * @return 保存结果
+     * @throws IOException 读写失败
+     */
+    @Transactional
+    public StoredBlob store(InputStream in, String extension) throws IOException {
+        StoredFile staged = fileWriter.write(in, root.resolve(INCOMING_DIRECTORY).resolve(UUID.randomUUID().toString()));
+        String sha256 = staged.sha256();
+        Path blob = blobPath(sha256);
+        boolean existing;
+        ReentrantLock lock = lockFor(sha256);
+        lock.lock();
+        try {
+            existing = Files.exists(blob);
+            if (existing) {
+                Files.delete(staged.path());
+                // 清理时按修改时间判断文件是否仍在保留期内
+                Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                Files.createDirectories(blob.getParent());
+                Files.move(staged.path(), blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+            fileBlobDao.upsert(sha256, staged.size(), LocalDateTime.now());
+            if (!extension.isEmpty()) {
+                link(blob, blob.resolveSibling(sha256 + extension));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (existing) {
+            deduplicated.increment();
+            deduplicatedBytes.add(staged.size());
+        }
+        return new StoredBlob(sha256, staged.size(), urlOf(sha256, extension), existing);
+    }
+
+    /**
+     * 认证详情行引用了文件，引用计数加一。不是本存储的访问路径（如旧的按日期存放的文件）时忽略
+     *
+     * @param url 文件访问路径
+     */
+    @Transactional
+    public void retain(String url) {
+        adjust(url, 1);
+    }
+
+    /**
+     * 把生成好的派生文件移入内容所在目录并登记访问路径；内容已被清除时丢弃
+     *
+     * @param sha256    文件内容的SHA-256
+     * @param thumbnail 暂存的缩略图
+     * @param preview   暂存的预览图，不需要时为null
+     * @return 已登记返回true
+     * @throws IOException 移动文件失败
+     */
+    @Transactional
+    public boolean recordDerivatives(String sha256, Path thumbnail, Path preview) throws IOException {
+        Path blob = blobPath(sha256);
+        ReentrantLock lock = lockFor(sha256);
+        lock.lock();
+        try {
+            if (!Files.exists(blob)) {
+                Files.deleteIfExists(thumbnail);
+                if (preview != null) {
+                    Files.deleteIfExists(preview);
+                }
+                return false;
+            }
+            Files.move(thumbnail, blob.resolveSibling(sha256 + THUMBNAIL_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            if (preview != null) {
+                Files.move(preview, blob.resolveSibling(sha256 + PREVIEW_SUFFIX),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            fileBlobDao.recordDerivatives(sha256, urlOf(sha256, THUMBNAIL_SUFFIX),
+                    preview == null ? null : urlOf(sha256, PREVIEW_SUFFIX));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一次查询取出多个文件的登记记录
+     *
+     * @param urls 文件访问路径，可含null和旧的按日期存放的路径
+     * @return 以访问路径为键，没有登记记录的路径不在其中
+     */
+    public Map<String, FileBlob> findAll(Collection<String> urls) {
+        Map<String, String> shaByUrl = new HashMap<>();
+        for (String url : urls) {
+            String sha256 = sha256Of(url);
+            if (sha256 != null) {
+                shaByUrl.put(url, sha256);
+            }
+        }
+        Map<String, FileBlob> result = new HashMap<>();
+        if (shaByUrl.isEmpty()) {
+            return result;
+        }
+        Map<String, FileBlob> blobs = new HashMap<>();
+        fileBlobDao.findAllById(shaByUrl.values()).forEach(blob -> blobs.put(blob.getSha256(), blob));
+        shaByUrl.forEach((url, sha256) -> {
+            FileBlob blob = blobs.get(sha256);
+            if (blob != null) {
+                result.put(url, blob);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 内容仍是孤儿时删除其记录和文件；认证详情表中实际仍有引用时校正引用计数并保留
+     *
+     * @param sha256 文件内容的SHA-256
+     * @param cutoff 保留期截止时间
+     * @return 已删除返回true
+     */
+    @Transactional
+    public boolean deleteIfOrphan(String sha256, LocalDateTime cutoff) {
+        ReentrantLock lock = lockFor(sha256);
+        lock.lock();
+        // 删除提交前释放锁的话，并发上传会看到旧记录和已删除的文件；调用方不应在同一事务中清除多份内容
+        boolean held = unlockAfterCompletion(lock);
+        try {
+            long references = fileBlobDao.countReferences("%" + sha256 + "%");
+            if (references > 0) {
+                logger.warn("文件{}的引用计数与实际引用数{}不一致，已校正", sha256, references);
+                fileBlobDao.resetRefCount(sha256, (int) references);
+                return false;
+            }
+            if (fileBlobDao.deleteIfOrphan(sha256, cutoff) == 0) {
+                return false;
+            }
+            // 记录的删除可能回滚，提交后再删文件，否则留下指向已删除文件的记录
+            afterCommit(() -> deleteFiles(sha256));
+            return true;
+        } finally {
+            if (!held) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 删除没有登记记录的文件（如登记所在事务回滚后留下的文件），只处理修改时间早于截止时间的文件
+     *
+     * @param sha256 文件内容的SHA-256
+     * @param cutoff 截止时间（毫秒）
+     * @return 已删除返回true
+     */
+    public boolean deleteIfUnregistered(String sha256, long cutoff) {
+        ReentrantLock lock = lockFor(sha256);
+        lock.lock();
+        try {
+            Path blob = blobPath(sha256);
+            if (!Files.exists(blob) || Files.getLastModifiedTime(blob).toMillis() >= cutoff
+                    || fileBlobDao.existsById(sha256)) {
+                return false;
+            }
+            deleteFiles(sha256);
+            return true;
+        } catch (IOException e) {
+            logger.warn("清理文件{}失败: {}", sha256, e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从访问路径中取出内容摘要
+     *
+     * @param url 文件访问路径
+     * @return 摘要，不是本存储的路径时返回null
+     */
+    public static String sha256Of(String url) {
+        if (url == null) {
+            return null;
+        }
+        Matcher matcher = BLOB_URL.matcher(url);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    static boolean isSha256(String name) {
+        return SHA256.matcher(name).matches();
+    }
+
+    Path root() {
+        return root;
+    }
+
+    Path incomingDirectory() {
+        return root.resolve(INCOMING_DIRECTORY);
+    }
+
+    boolean hasThumbnail(String sha256) {
+        return Files.exists(blobPath(sha256).resolveSibling(sha256 + THUMBNAIL_SUFFIX));
+    }
+
+    Path blobPath(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("upload.deduplicated", deduplicated, LongAdder::sum)
+                .description("内容已存在而未重复写入的上传数").register(registry);
+        FunctionCounter.builder("upload.deduplicated.bytes", deduplicatedBytes, LongAdder::sum)
+                .description("去重节省的磁盘字节数").baseUnit("bytes").register(registry);
+    }
+
+    private void adjust(String url, int delta) {
+        String sha256 = sha256Of(url);
+        if (sha256 != null && fileBlobDao.adjustRefCount(sha256, delta, LocalDateTime.now()) == 0) {
+            logger.warn("引用的文件{}没有登记记录", sha256);
+        }
+    }
+
+    // 在当前事务提交或回滚后释放锁；没有事务时返回false，由调用方自行释放
+    private static boolean unlockAfterCompletion(ReentrantLock lock) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+        return true;
+    }
+
+    // 在当前事务提交后执行；没有事务时立即执行
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private String urlOf(String sha256, String extension) {
+        return accessPath + "/" + BLOB_DIRECTORY + "/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/"
+                + sha256 + extension;
+    }
+
+    private static void link(Path blob, Path alias) throws IOException {
+        if (Files.exists(alias)) {
+            return;
+        }
+        try {
+            Files.createLink(alias, blob);
+        } catch (FileAlreadyExistsException e) {
+            // 并发上传已创建
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(blob, alias, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // 删除内容文件及其所有带扩展名的链接
+    private void deleteFiles(String sha256) {
+        Path blob = blobPath(sha256);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(blob.getParent(), sha256 + "*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("删除文件{}失败: {}", sha256, e.getMessage());
+        }
+    }
+
+    private ReentrantLock lockFor(String sha256) {
+        return locks[Integer.parseInt(sha256.substring(0, 2), 16) % LOCK_STRIPES];
+    }
+}
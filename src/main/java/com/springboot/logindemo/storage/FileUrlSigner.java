@@ -0,0 +1,109 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-18
+ * @description 上传文件访问路径的签名
+ */
+package com.springboot.logindemo.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * 数据库中保存的是不带签名的访问路径，接口返回给前端时才签名：
+ * {file.access.path}/blobs/ab/cd/{sha256}.pdf?expires=秒级时间戳&signature=HMAC-SHA256(路径\n时间戳)。
+ * 过期时间按有效期取整，同一时段内多次查询得到相同的URL，浏览器缓存仍然有效。
+ * file.access.signing-key必须配置，为空时启动失败：随机密钥会让重启或另一节点签发的链接全部失效；
+ * 多节点部署需配置相同的密钥。
+ */
+@Component
+public class FileUrlSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final String accessPath;
+
+    // 访问路径中的挂载前缀，如/files
+    private final String mountPath;
+
+    private final long windowSeconds;
+
+    private final SecretKeySpec key;
+
+    public FileUrlSigner(@Value("${file.access.path}") String accessPath,
+            @Value("${file.access.signing-key:}") String signingKey,
+            @Value("${file.access.url-ttl-minutes:30}") long ttlMinutes) {
+        this.accessPath = accessPath;
+        String path = URI.create(accessPath).getPath();
+        this.mountPath = path == null ? "" : path;
+        this.windowSeconds = Duration.ofMinutes(ttlMinutes).toSeconds();
+        if (signingKey == null || signingKey.isBlank()) {
+            throw new IllegalStateException("未配置file.access.signing-key，无法签发文件访问链接");
+        }
+        this.key = new SecretKeySpec(signingKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * 为访问路径加上过期时间和签名
+     *
+     * @param url 数据库中保存的访问路径，可为null
+     * @return 签名后的URL；null或不是上传文件的路径原样返回
+     */
+    public String sign(String url) {
+        if (url == null || !url.startsWith(accessPath + "/")) {
+            return url;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        // 有效期在1到2个时段之间
+        long expires = (now / windowSeconds + 2) * windowSeconds;
+        String path = url.substring(accessPath.length());
+        return url + "?expires=" + expires + "&signature=" + signature(path, expires);
+    }
+
+    /**
+     * 校验请求路径上的签名
+     *
+     * @param requestPath 去掉上下文路径并解码后的请求路径，如/files/blobs/ab/cd/{sha256}.pdf
+     * @param expires     expires参数
+     * @param signature   signature参数
+     * @return 签名正确且未过期时返回过期时间（秒级时间戳），否则返回-1
+     */
+    public long verify(String requestPath, String expires, String signature) {
+        if (requestPath == null || expires == null || signature == null
+                || !requestPath.startsWith(mountPath + "/")) {
+            return -1;
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(expires);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (expiresAt <= System.currentTimeMillis() / 1000) {
+            return -1;
+        }
+        String expected = signature(requestPath.substring(mountPath.length()), expiresAt);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII)) ? expiresAt : -1;
+    }
+
+    private String signature(String path, long expires) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal((path + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
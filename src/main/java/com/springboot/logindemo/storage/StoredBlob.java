@@ -0,0 +1,18 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 保存到内容寻址存储中的上传文件
+ */
+package com.springboot.logindemo.storage;
+
+/**
+ * 保存结果
+ *
+ * @param sha256       文件内容的SHA-256
+ * @param size         字节数
+ * @param url          文件访问路径
+ * @param deduplicated 内容已存在，本次上传没有新增磁盘占用
+ */
+public record StoredBlob(String sha256, long size, String url, boolean deduplicated) {
+}
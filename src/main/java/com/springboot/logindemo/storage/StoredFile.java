@@ -0,0 +1,19 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 已写入磁盘的上传文件
+ */
+package com.springboot.logindemo.storage;
+
+import java.nio.file.Path;
+
+/**
+ * 流式写入完成的文件
+ *
+ * @param path   文件路径
+ * @param size   字节数
+ * @param sha256 内容的SHA-256（小写十六进制）
+ */
+public record StoredFile(Path path, long size, String sha256) {
+}
@@ -0,0 +1,97 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 上传文件的流式落盘
+ */
+package com.springboot.logindemo.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 把上传内容从输入流直接转移到磁盘文件，不把整个文件读入堆内存：
+ * FileChannel.transferFrom分块搬运，经过的字节同时计算SHA-256，超过大小上限时立即中止。
+ * 内容先写入同目录的临时文件，完成（并按配置刷盘）后原子重命名为目标文件，读者不会看到写了一半的文件。
+ * 只刷文件数据（force(false)），不同步元数据，认证材料写入后不会因断电丢失，又避免每次多一次元数据写。
+ */
+@Component
+public class StreamingFileWriter {
+
+    // 每次transferFrom搬运的最大字节数，JDK用一个同样大小以内的临时直接缓冲区中转
+    private static final long CHUNK_BYTES = 64 * 1024;
+
+    private final long maxBytes;
+
+    private final boolean fsync;
+
+    public StreamingFileWriter(@Value("${file.upload.max-bytes:10485760}") long maxBytes,
+            @Value("${file.upload.fsync:true}") boolean fsync) {
+        this.maxBytes = maxBytes;
+        this.fsync = fsync;
+    }
+
+    /**
+     * 把输入流写入目标文件，结束后关闭输入流
+     *
+     * @param in     上传内容
+     * @param target 目标文件，父目录不存在时自动创建
+     * @return 写入的文件及其大小、SHA-256
+     * @throws IOException 读写失败
+     */
+    public StoredFile write(InputStream in, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, ".upload-", ".tmp");
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(in, digest));
+                FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (true) {
+                // 多请求一个字节，读到它就说明超过了上限
+                long transferred = out.transferFrom(source, size, Math.min(CHUNK_BYTES, maxBytes + 1 - size));
+                if (transferred <= 0) {
+                    break;
+                }
+                size += transferred;
+                if (size > maxBytes) {
+                    throw new RuntimeException("文件大小超过" + maxBytes + "字节的上限");
+                }
+            }
+            if (fsync) {
+                out.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return new StoredFile(target, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
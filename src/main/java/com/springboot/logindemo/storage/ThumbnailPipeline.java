@@ -0,0 +1,340 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-16
+ * @description 上传图片/PDF的缩略图与预览图后台生成
+ */
+package com.springboot.logindemo.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传完成后在有界线程池中为图片和PDF生成派生文件，审核列表加载缩略图即可，不必打开原文件：
+ * <ul>
+ *     <li>缩略图：长边不超过file.thumbnail.max-edge的JPEG，PDF取第一页；</li>
+ *     <li>预览图：长边超过file.preview.max-edge的图片另存一份缩小后的JPEG。</li>
+ * </ul>
+ * 原文件保持不变（认证材料需要原样留存，且按内容摘要寻址）。派生文件由内容摘要决定，相同内容只生成一次。
+ * 线程池已满时放弃本次生成，查询认证状态时发现缺少缩略图会重新提交。
+ */
+@Component
+public class ThumbnailPipeline implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailPipeline.class);
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of(".jpg", ".jpeg", ".png", ".gif", ".bmp");
+
+    private static final String PDF_EXTENSION = ".pdf";
+
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private final BlobStore blobStore;
+
+    private final int thumbnailEdge;
+
+    private final int previewEdge;
+
+    private final long maxPixels;
+
+    private final ThreadPoolExecutor executor;
+
+    // 排队或处理中的内容摘要，同一内容重复上传时不重复生成
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    // 无法生成的内容（格式不支持、加密的PDF等），不再反复尝试
+    private final Cache<String, Boolean> failed = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile MeterRegistry meterRegistry;
+
+    public ThumbnailPipeline(BlobStore blobStore,
+            @Value("${file.thumbnail.max-edge:320}") int thumbnailEdge,
+            @Value("${file.preview.max-edge:1600}") int previewEdge,
+            @Value("${file.thumbnail.max-pixels:50000000}") long maxPixels,
+            @Value("${file.thumbnail.workers:2}") int workers,
+            @Value("${file.thumbnail.queue-capacity:500}") int queueCapacity) {
+        this.blobStore = blobStore;
+        this.thumbnailEdge = thumbnailEdge;
+        this.previewEdge = previewEdge;
+        this.maxPixels = maxPixels;
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 为上传的文件排队生成派生文件。在事务中调用时等提交后再排队，此时文件登记记录已经可见
+     *
+     * @param url 文件访问路径
+     */
+    public void submit(String url) {
+        String sha256 = BlobStore.sha256Of(url);
+        String extension = extensionOf(url);
+        if (sha256 == null || !(IMAGE_EXTENSIONS.contains(extension) || PDF_EXTENSION.equals(extension))) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(sha256, extension);
+                }
+            });
+        } else {
+            enqueue(sha256, extension);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("upload.thumbnail.queued", executor, e -> e.getQueue().size())
+                .description("等待生成缩略图的文件数").register(registry);
+        FunctionCounter.builder("upload.thumbnail.rejected", rejected, LongAdder::sum)
+                .description("线程池已满被放弃的缩略图任务数").register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void enqueue(String sha256, String extension) {
+        if (failed.getIfPresent(sha256) != null || blobStore.hasThumbnail(sha256) || !pending.add(sha256)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(sha256, extension);
+                } finally {
+                    pending.remove(sha256);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(sha256);
+            rejected.increment();
+            logger.debug("缩略图线程池繁忙，跳过{}", sha256);
+        }
+    }
+
+    // 生成并登记派生文件，失败只记录日志，原文件照常可用
+    void generate(String sha256, String extension) {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        Path thumbnail = null;
+        Path preview = null;
+        try {
+            Path source = blobStore.blobPath(sha256);
+            BufferedImage image;
+            boolean oversized = false;
+            if (PDF_EXTENSION.equals(extension)) {
+                image = renderFirstPage(source);
+            } else {
+                // 需要预览图时按预览尺寸解码，否则按缩略图尺寸，避免把大图整张读进内存
+                int[] size = imageSize(source);
+                if (size == null) {
+                    outcome = "unsupported";
+                    return;
+                }
+                oversized = Math.max(size[0], size[1]) > previewEdge;
+                image = readImage(source, oversized ? previewEdge : thumbnailEdge);
+            }
+            if (image == null) {
+                outcome = "unsupported";
+                return;
+            }
+            thumbnail = writeJpeg(scale(image, thumbnailEdge));
+            if (oversized) {
+                preview = writeJpeg(scale(image, previewEdge));
+            }
+            outcome = blobStore.recordDerivatives(sha256, thumbnail, preview) ? "success" : "deleted";
+        } catch (IOException | RuntimeException e) {
+            logger.warn("生成缩略图失败 {}: {}", sha256, e.getMessage());
+            deleteQuietly(thumbnail);
+            deleteQuietly(preview);
+        } finally {
+            if ("failure".equals(outcome) || "unsupported".equals(outcome)) {
+                failed.put(sha256, Boolean.TRUE);
+            }
+            MeterRegistry registry = meterRegistry;
+            if (registry != null) {
+                Timer.builder("upload.thumbnail")
+                        .description("生成缩略图和预览图的耗时")
+                        .tag("outcome", outcome)
+                        .register(registry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    // 只读文件头取宽高；不是可识别的图片或像素数超过上限时返回null
+    private int[] imageSize(Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = readerFor(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    logger.warn("图片{}x{}超过{}像素的上限，不生成缩略图", width, height, maxPixels);
+                    return null;
+                }
+                return new int[] { width, height };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // 按目标尺寸隔行隔列采样解码，解码结果仍不小于目标尺寸的两倍，再缩放时保证清晰度
+    private BufferedImage readImage(Path source, int targetEdge) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = readerFor(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longest / (targetEdge * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage renderFirstPage(Path source) throws IOException {
+        try (PDDocument document = Loader.loadPDF(source.toFile())) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            float scale = thumbnailEdge / Math.max(box.getWidth(), box.getHeight());
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    // 等比缩放到长边不超过maxEdge，透明部分填充白色后转为RGB
+    private static BufferedImage scale(BufferedImage image, int maxEdge) {
+        double ratio = Math.min(1.0, (double) maxEdge / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    // 写到暂存目录，由BlobStore移入内容所在目录
+    private Path writeJpeg(BufferedImage image) throws IOException {
+        Files.createDirectories(blobStore.incomingDirectory());
+        Path target = Files.createTempFile(blobStore.incomingDirectory(), ".derived-", ".jpg");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        return target;
+    }
+
+    private static ImageReader readerFor(ImageInputStream in) {
+        if (in == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    private static String extensionOf(String url) {
+        int slash = url.lastIndexOf('/');
+        int dot = url.lastIndexOf('.');
+        return dot > slash ? url.substring(dot).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("删除临时文件失败: {}", e.getMessage());
+        }
+    }
+}
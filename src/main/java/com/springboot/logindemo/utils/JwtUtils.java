@@ -6,15 +6,66 @@
  */
 package com.springboot.logindemo.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class JwtUtils {
     private static final String SECRET_KEY = "your_jwt_secret_key_please_change_in_production";
     private static final long EXPIRATION_TIME = 24 * 60 * 60 * 1000; // 24小时
 
+    // 预先构建的签名密钥，与按Base64字符串签名的旧令牌兼容
+    private static final Key SIGNING_KEY = new SecretKeySpec(TextCodec.BASE64.decode(SECRET_KEY),
+            SignatureAlgorithm.HS512.getJcaName());
+
+    // 已校验令牌的摘要 -> 声明。Caffeine读取时不加全局锁，虚拟线程下也不会因争用监视器而钉住载体线程
+    private static final int VERIFIED_CACHE_SIZE = 10000;
+    private static final Cache<String, Claims> VERIFIED = Caffeine.newBuilder()
+            .maximumSize(VERIFIED_CACHE_SIZE)
+            .build();
+
+    // 令牌校验耗时，按结果来源区分：请求内已解析、已校验缓存、验签解析、校验失败。
+    // 工具类是静态的，计时器注册在全局注册表上，Spring Boot会把它接入Prometheus
+    private static final Timer VERIFY_FROM_REQUEST = verifyTimer("request");
+    private static final Timer VERIFY_FROM_CACHE = verifyTimer("cache");
+    private static final Timer VERIFY_SIGNATURE = verifyTimer("signature");
+    private static final Timer VERIFY_INVALID = verifyTimer("invalid");
+
+    // 当前请求中已解析的令牌主体
+    public static final String PRINCIPAL_ATTRIBUTE = JwtUtils.class.getName() + ".PRINCIPAL";
+
+    // 令牌声明集版本，声明结构变化时递增；2：纪元改为按用户的计数器，此前签发的令牌一律回源
+    public static final int CLAIMS_VERSION = 2;
+    public static final String CLAIM_VERSION = "ver";
+    public static final String CLAIM_PHONENUM = "phone";
+    public static final String CLAIM_UNAME = "uname";
+    public static final String CLAIM_LOGIN_PERMISSION = "lp";
+    public static final String CLAIM_ROLE_IDS = "rids";
+    public static final String CLAIM_EPOCH = "pe";
+
     public static String generateToken(String userId) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + EXPIRATION_TIME);
@@ -23,15 +74,112 @@ public class JwtUtils {
                 .setSubject(userId)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(SignatureAlgorithm.HS512, SECRET_KEY)
+                .signWith(SignatureAlgorithm.HS512, SIGNING_KEY)
                 .compact();
     }
 
+    /**
+     * 生成携带用户声明的令牌，校验通过后可直接用声明响应请求
+     *
+     * @param user  用户（需已加载角色）
+     * @param epoch 签发时的权限纪元
+     * @return 令牌
+     */
+    public static String generateToken(User user, long epoch) {
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + EXPIRATION_TIME);
+
+        List<Long> roleIds = new ArrayList<>();
+        if (user.getRoles() != null) {
+            for (Role role : user.getRoles()) {
+                roleIds.add(role.getId());
+            }
+        }
+
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_VERSION, CLAIMS_VERSION);
+        claims.put(CLAIM_PHONENUM, user.getPhonenum());
+        claims.put(CLAIM_UNAME, user.getUname());
+        claims.put(CLAIM_LOGIN_PERMISSION, user.getLoginPermission());
+        claims.put(CLAIM_ROLE_IDS, roleIds);
+        claims.put(CLAIM_EPOCH, epoch);
+
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(String.valueOf(user.getUid()))
+                .setIssuedAt(now)
+                .setExpiration(expiryDate)
+                .signWith(SignatureAlgorithm.HS512, SIGNING_KEY)
+                .compact();
+    }
+
+    // 令牌是否携带当前版本的用户声明
+    public static boolean hasUserClaims(Claims claims) {
+        Object version = claims.get(CLAIM_VERSION);
+        return version instanceof Number && ((Number) version).intValue() == CLAIMS_VERSION
+                && claims.get(CLAIM_EPOCH) instanceof Number;
+    }
+
+    public static long getEpoch(Claims claims) {
+        return ((Number) claims.get(CLAIM_EPOCH)).longValue();
+    }
+
+    public static List<Long> getRoleIds(Claims claims) {
+        Object value = claims.get(CLAIM_ROLE_IDS);
+        if (!(value instanceof List)) {
+            return Collections.emptyList();
+        }
+        List<Long> roleIds = new ArrayList<>();
+        for (Object id : (List<?>) value) {
+            roleIds.add(((Number) id).longValue());
+        }
+        return roleIds;
+    }
+
+    /**
+     * 校验令牌并返回声明。依次使用当前请求已解析的主体、已校验令牌缓存，都未命中时才验签解析
+     *
+     * @param token 令牌
+     * @return 声明
+     */
     public static Claims verifyToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(SECRET_KEY)
-                .parseClaimsJws(token)
-                .getBody();
+        long start = System.nanoTime();
+        TokenPrincipal principal = currentPrincipal();
+        if (principal != null && principal.getToken().equals(token)) {
+            VERIFY_FROM_REQUEST.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return principal.getClaims();
+        }
+
+        String digest = digest(token);
+        Claims claims = VERIFIED.getIfPresent(digest);
+        if (claims != null) {
+            if (claims.getExpiration() == null || claims.getExpiration().getTime() > System.currentTimeMillis()) {
+                VERIFY_FROM_CACHE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return claims;
+            }
+            // 已过期，交给解析器抛出过期异常
+            VERIFIED.invalidate(digest);
+        }
+
+        try {
+            claims = Jwts.parser()
+                    .setSigningKey(SIGNING_KEY)
+                    .parseClaimsJws(token)
+                    .getBody();
+        } catch (RuntimeException e) {
+            VERIFY_INVALID.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        VERIFIED.put(digest, claims);
+        VERIFY_SIGNATURE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return claims;
+    }
+
+    private static Timer verifyTimer(String source) {
+        return Timer.builder("jwt.verify")
+                .description("JWT令牌校验耗时")
+                .tag("source", source)
+                .register(Metrics.globalRegistry);
     }
 
     public static String getUserIdFromToken(String token) {
@@ -41,10 +189,57 @@ public class JwtUtils {
 
     public static boolean validateToken(String token) {
         try {
-            Jwts.parser().setSigningKey(SECRET_KEY).parseClaimsJws(token);
+            verifyToken(token);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    // 将已解析的令牌主体绑定到当前请求，后续同一令牌不再重复解析
+    public static void attachPrincipal(HttpServletRequest request, String token, Claims claims) {
+        request.setAttribute(PRINCIPAL_ATTRIBUTE, new TokenPrincipal(token, claims));
+    }
+
+    public static TokenPrincipal currentPrincipal() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return (TokenPrincipal) attributes.getAttribute(PRINCIPAL_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return new String(hash, StandardCharsets.ISO_8859_1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 请求中已校验的令牌及其声明
+     */
+    public static class TokenPrincipal {
+        private final String token;
+        private final Claims claims;
+
+        public TokenPrincipal(String token, Claims claims) {
+            this.token = token;
+            this.claims = claims;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public Claims getClaims() {
+            return claims;
+        }
+
+        public Long getUserId() {
+            return Long.parseLong(claims.getSubject());
+        }
+    }
+}
@@ -9,16 +9,30 @@ package com.springboot.logindemo.utils;
 import com.springboot.logindemo.domain.User;
 import com.springboot.logindemo.domain.Role;
 import com.springboot.logindemo.domain.Permission;
+import com.springboot.logindemo.security.PermissionIndex;
 
 public class PermissionUtils {
 
+    // 由PermissionIndex在容器启动时注册
+    private static volatile PermissionIndex permissionIndex;
+
+    public static void setPermissionIndex(PermissionIndex index) {
+        permissionIndex = index;
+    }
+
     public static boolean hasPermission(User user, String permissionName) {
         if (user == null || user.getRoles() == null) {
             return false;
         }
 
+        PermissionIndex index = permissionIndex;
+        if (index != null) {
+            return index.hasPermission(user.getUid(), permissionName);
+        }
+
         return user.getRoles().stream()
                 .flatMap(role -> role.getPermissions().stream())
-                .anyMatch(permission -> permission.getName().equals(permissionName));
+                .anyMatch(permission -> permission.getName().equals(permissionName)
+                        && Integer.valueOf(1).equals(permission.getActive()));
     }
-}
\ No newline at end of file
+}
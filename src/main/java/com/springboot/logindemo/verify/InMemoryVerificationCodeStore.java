@@ -0,0 +1,92 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-11
+ * @description 进程内短信验证码存储
+ */
+package com.springboot.logindemo.verify;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 单节点部署和测试使用的验证码存储，语义与RedisVerificationCodeStore一致。
+ * 对同一手机号的操作通过ConcurrentMap.compute原子执行。
+ */
+@Component
+@ConditionalOnProperty(name = "verify-code.store", havingValue = "memory")
+public class InMemoryVerificationCodeStore implements VerificationCodeStore {
+
+    private final long ttlMillis;
+
+    private final int maxAttempts;
+
+    private final long lockoutMillis;
+
+    // 手机号 -> 验证码
+    private final Cache<String, Entry> codes;
+
+    // 手机号 -> 锁定截止时间
+    private final Cache<String, Long> locks;
+
+    public InMemoryVerificationCodeStore(@Value("${verify-code.ttl-seconds:300}") long ttlSeconds,
+            @Value("${verify-code.max-attempts:5}") int maxAttempts,
+            @Value("${verify-code.lockout-seconds:900}") long lockoutSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxAttempts = maxAttempts;
+        this.lockoutMillis = lockoutSeconds * 1000;
+        // 过期时间只用于清理，是否有效以条目中的截止时间为准
+        this.codes = Caffeine.newBuilder().expireAfterWrite(Duration.ofMillis(ttlMillis)).build();
+        this.locks = Caffeine.newBuilder().expireAfterWrite(Duration.ofMillis(lockoutMillis)).build();
+    }
+
+    @Override
+    public boolean save(String phoneNum, String code) {
+        long now = System.currentTimeMillis();
+        if (isLocked(phoneNum, now)) {
+            return false;
+        }
+        codes.put(phoneNum, new Entry(code, now + ttlMillis, 0));
+        return true;
+    }
+
+    @Override
+    public Result consume(String phoneNum, String code) {
+        long now = System.currentTimeMillis();
+        if (isLocked(phoneNum, now)) {
+            return Result.LOCKED;
+        }
+        Result[] result = { Result.EXPIRED };
+        codes.asMap().compute(phoneNum, (phone, entry) -> {
+            if (entry == null || entry.expiresAt <= now) {
+                return null;
+            }
+            if (entry.code.equals(code)) {
+                result[0] = Result.OK;
+                return null;
+            }
+            int attempts = entry.attempts + 1;
+            if (attempts >= maxAttempts) {
+                locks.put(phone, now + lockoutMillis);
+                result[0] = Result.LOCKED;
+                return null;
+            }
+            result[0] = Result.MISMATCH;
+            return new Entry(entry.code, entry.expiresAt, attempts);
+        });
+        return result[0];
+    }
+
+    private boolean isLocked(String phoneNum, long now) {
+        Long until = locks.getIfPresent(phoneNum);
+        return until != null && until > now;
+    }
+
+    private record Entry(String code, long expiresAt, int attempts) {
+    }
+}
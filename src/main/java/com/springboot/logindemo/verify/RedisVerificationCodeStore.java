@@ -0,0 +1,93 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-11
+ * @description 基于Redis的短信验证码存储
+ */
+package com.springboot.logindemo.verify;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 验证码、错误次数和锁定标记分别存放在 verify:{phone}:code / attempts / lock 三个键中，
+ * 花括号使三个键在Redis集群中落在同一槽位。保存和校验都通过Lua脚本原子执行，
+ * 并发的多次校验中最多只有一次能成功消费验证码。
+ */
+@Component
+@ConditionalOnProperty(name = "verify-code.store", havingValue = "redis", matchIfMissing = true)
+public class RedisVerificationCodeStore implements VerificationCodeStore {
+
+    // 锁定期内不保存；否则写入验证码并清空错误次数
+    private static final RedisScript<Long> SAVE = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[3]) == 1 then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+                    + "redis.call('DEL', KEYS[2]) "
+                    + "return 1",
+            Long.class);
+
+    // 返回值：0通过 1错误 2不存在 3锁定
+    private static final RedisScript<Long> CONSUME = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[3]) == 1 then return 3 end "
+                    + "local stored = redis.call('GET', KEYS[1]) "
+                    + "if not stored then return 2 end "
+                    + "if stored == ARGV[1] then redis.call('DEL', KEYS[1], KEYS[2]) return 0 end "
+                    + "local attempts = redis.call('INCR', KEYS[2]) "
+                    + "if attempts == 1 then redis.call('PEXPIRE', KEYS[2], math.max(redis.call('PTTL', KEYS[1]), 1)) end "
+                    + "if attempts >= tonumber(ARGV[2]) then "
+                    + "redis.call('DEL', KEYS[1], KEYS[2]) "
+                    + "redis.call('SET', KEYS[3], '1', 'EX', ARGV[3]) "
+                    + "return 3 end "
+                    + "return 1",
+            Long.class);
+
+    private static final Result[] RESULTS = { Result.OK, Result.MISMATCH, Result.EXPIRED, Result.LOCKED };
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final long ttlSeconds;
+
+    private final int maxAttempts;
+
+    private final long lockoutSeconds;
+
+    public RedisVerificationCodeStore(StringRedisTemplate redisTemplate,
+            @Value("${verify-code.ttl-seconds:300}") long ttlSeconds,
+            @Value("${verify-code.max-attempts:5}") int maxAttempts,
+            @Value("${verify-code.lockout-seconds:900}") long lockoutSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.ttlSeconds = ttlSeconds;
+        this.maxAttempts = maxAttempts;
+        this.lockoutSeconds = lockoutSeconds;
+    }
+
+    @Override
+    public boolean save(String phoneNum, String code) {
+        Long saved = redisTemplate.execute(SAVE, keys(phoneNum), code, String.valueOf(ttlSeconds));
+        return saved != null && saved == 1L;
+    }
+
+    @Override
+    public Result consume(String phoneNum, String code) {
+        if (code == null) {
+            return Result.MISMATCH;
+        }
+        Long result = redisTemplate.execute(CONSUME, keys(phoneNum), code, String.valueOf(maxAttempts),
+                String.valueOf(lockoutSeconds));
+        if (result == null || result < 0 || result >= RESULTS.length) {
+            throw new RuntimeException("验证码校验失败");
+        }
+        return RESULTS[result.intValue()];
+    }
+
+    private static List<String> keys(String phoneNum) {
+        String prefix = "verify:{" + phoneNum + "}:";
+        return List.of(prefix + "code", prefix + "attempts", prefix + "lock");
+    }
+}
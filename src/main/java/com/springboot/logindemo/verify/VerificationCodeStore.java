@@ -0,0 +1,44 @@
+/**
+ * @author 潘楠
+ * @cooperators 协作者
+ * @date 2025-4-11
+ * @description 短信验证码存储
+ */
+package com.springboot.logindemo.verify;
+
+/**
+ * 按手机号保存短信验证码，取代HttpSession属性，使验证码在无状态的多个节点间共享。
+ * 校验成功时验证码被原子地删除，同一验证码只能使用一次；
+ * 连续输错达到上限后删除验证码并锁定该手机号一段时间。
+ */
+public interface VerificationCodeStore {
+
+    /**
+     * 保存验证码并重置错误次数，覆盖该手机号之前的验证码
+     *
+     * @param phoneNum 手机号
+     * @param code     验证码
+     * @return 手机号处于锁定期时不保存并返回false
+     */
+    boolean save(String phoneNum, String code);
+
+    /**
+     * 校验并消费验证码
+     *
+     * @param phoneNum 手机号
+     * @param code     用户输入的验证码
+     * @return 校验结果
+     */
+    Result consume(String phoneNum, String code);
+
+    enum Result {
+        // 校验通过，验证码已删除
+        OK,
+        // 验证码错误，错误次数加一
+        MISMATCH,
+        // 验证码不存在或已过期
+        EXPIRED,
+        // 错误次数过多，手机号被锁定
+        LOCKED
+    }
+}
@@ -0,0 +1,14 @@
+-- 已有重复账号时唯一索引无法创建：保留uid最小的账号不变，其余账号的手机号或用户名加上"_uid"后缀。
+-- 后缀账号仍保留全部数据和角色，但不能再用重复的值登录，需由管理员核实后改回有效的值
+UPDATE user u
+JOIN user keep ON keep.phonenum = u.phonenum AND keep.uid < u.uid
+SET u.phonenum = CONCAT(u.phonenum, '_', u.uid);
+
+UPDATE user u
+JOIN user keep ON keep.uname = u.uname AND keep.uid < u.uid
+SET u.uname = CONCAT(u.uname, '_', u.uid);
+
+-- 手机号和用户名均可作为登录账号，添加唯一索引以支持单次查询定位账号
+ALTER TABLE user
+ADD UNIQUE INDEX uk_user_phonenum (phonenum),
+ADD UNIQUE INDEX uk_user_uname (uname);
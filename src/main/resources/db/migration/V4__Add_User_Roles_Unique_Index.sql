@@ -0,0 +1,6 @@
+-- 删除重复的用户角色关联，保留id最小的一条
+DELETE ur FROM user_roles ur
+JOIN user_roles keep ON keep.user_id = ur.user_id AND keep.role_id = ur.role_id AND keep.id < ur.id;
+
+-- 同一用户同一角色只允许一行，批量分配角色的INSERT IGNORE依赖此唯一索引去重
+ALTER TABLE user_roles ADD UNIQUE INDEX uk_user_roles_user_role (user_id, role_id);
@@ -0,0 +1,9 @@
+-- 按内容寻址的上传文件：每个SHA-256只存一份，ref_count为认证详情表中引用该文件的次数
+CREATE TABLE file_blobs (
+  sha256 CHAR(64) PRIMARY KEY COMMENT '文件内容的SHA-256',
+  size_bytes BIGINT NOT NULL COMMENT '文件字节数',
+  ref_count INT NOT NULL DEFAULT 0 COMMENT '被natural_person/individual_business/enterprise引用的次数',
+  create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  update_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '最后一次上传或引用变化的时间',
+  INDEX idx_file_blobs_ref_count_update_time (ref_count, update_time)
+) COMMENT '上传文件内容表';
@@ -0,0 +1,4 @@
+-- 后台生成的缩略图和大图预览的访问路径，未生成或不是图片/PDF时为空
+ALTER TABLE file_blobs
+ADD COLUMN thumbnail_url VARCHAR(255) NULL COMMENT '缩略图访问路径',
+ADD COLUMN preview_url VARCHAR(255) NULL COMMENT '尺寸过大的图片压缩后的预览图访问路径';
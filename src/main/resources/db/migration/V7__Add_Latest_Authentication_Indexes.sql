@@ -0,0 +1,8 @@
+-- 按用户查询最新一条认证记录：(user_id, create_time)倒序扫描取第一行，无需读取该用户的全部记录
+ALTER TABLE authentication
+ADD INDEX idx_authentication_user_id_create_time (user_id, create_time);
+
+-- 最新认证记录按auth_id连接对应的详情表
+ALTER TABLE natural_person ADD INDEX idx_natural_person_auth_id (auth_id);
+ALTER TABLE individual_business ADD INDEX idx_individual_business_auth_id (auth_id);
+ALTER TABLE enterprise ADD INDEX idx_enterprise_auth_id (auth_id);
@@ -0,0 +1,66 @@
+package com.springboot.logindemo.benchmark;
+
+import com.springboot.logindemo.domain.Permission;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 基准测试使用的内存数据，不依赖数据库和Redis
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * 构建一个拥有多个角色、每个角色多个权限的用户
+     *
+     * @param roleCount          角色数
+     * @param permissionsPerRole 每个角色的权限数
+     * @return 用户
+     */
+    public static User populatedUser(int roleCount, int permissionsPerRole) {
+        LocalDateTime now = LocalDateTime.of(2025, 4, 9, 10, 30, 15);
+        User user = new User();
+        user.setUid(10086L);
+        user.setUname("benchmark_user");
+        user.setPhonenum("13800138000");
+        user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z2tqkGQj4Hb2CPF8pM9jW5bC");
+        user.setLoginPermission(1);
+        user.setAdminPermission(0);
+        user.setCreateTime(now);
+        user.setUpdateTime(now);
+
+        Set<Role> roles = new HashSet<>();
+        long permissionId = 1;
+        for (int r = 0; r < roleCount; r++) {
+            Role role = new Role();
+            role.setId((long) r + 1);
+            role.setName("role_" + r);
+            role.setDescription("基准测试角色" + r);
+            role.setActive(1);
+            role.setCreateTime(now);
+            role.setUpdateTime(now);
+            Set<Permission> permissions = new HashSet<>();
+            for (int p = 0; p < permissionsPerRole; p++) {
+                Permission permission = new Permission();
+                permission.setId(permissionId);
+                permission.setName("permission_" + permissionId);
+                permission.setDescription("基准测试权限" + permissionId);
+                permission.setActive(1);
+                permission.setCreateTime(now);
+                permission.setUpdateTime(now);
+                permissions.add(permission);
+                permissionId++;
+            }
+            role.setPermissions(permissions);
+            roles.add(role);
+        }
+        user.setRoles(roles);
+        return user;
+    }
+}
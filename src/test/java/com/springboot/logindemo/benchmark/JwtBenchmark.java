@@ -0,0 +1,66 @@
+package com.springboot.logindemo.benchmark;
+
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.utils.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌签发与校验：verifyCached为已校验令牌缓存命中的路径，verifySignature为缓存未命中时的验签解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    @Param({ "1", "5" })
+    public int roles;
+
+    private User user;
+    private String token;
+    private Key signingKey;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        user = Fixtures.populatedUser(roles, 10);
+        token = JwtUtils.generateToken(user, System.currentTimeMillis());
+        JwtUtils.verifyToken(token);
+        // 直接使用签名密钥测量验签本身的开销
+        Field field = JwtUtils.class.getDeclaredField("SIGNING_KEY");
+        field.setAccessible(true);
+        signingKey = (Key) field.get(null);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return JwtUtils.generateToken(user, 1L);
+    }
+
+    @Benchmark
+    public Claims verifyCached() {
+        return JwtUtils.verifyToken(token);
+    }
+
+    @Benchmark
+    public Claims verifySignature() {
+        return Jwts.parser().setSigningKey(signingKey).parseClaimsJws(token).getBody();
+    }
+}
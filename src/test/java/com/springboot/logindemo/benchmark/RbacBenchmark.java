@@ -0,0 +1,103 @@
+package com.springboot.logindemo.benchmark;
+
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.dto.UserRolePermissionDto;
+import com.springboot.logindemo.security.Permission;
+import com.springboot.logindemo.security.PermissionIndex;
+import com.springboot.logindemo.security.PermissionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 权限判断与角色权限DTO构建。PermissionIndex使用预先编入索引的内存用户，不访问数据库；
+ * PermissionService读取线程上的SecurityContext，因此状态按线程隔离
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RbacBenchmark {
+
+    @Param({ "1", "5" })
+    public int roles;
+
+    private User user;
+    private PermissionIndex permissionIndex;
+    private PermissionService permissionService;
+    private long lastPermissionId;
+    private String lastPermissionName;
+
+    @Setup
+    public void setup() {
+        user = Fixtures.populatedUser(roles, 10);
+        lastPermissionId = roles * 10L;
+        lastPermissionName = "permission_" + lastPermissionId;
+        permissionIndex = new PermissionIndex(10000, 300);
+        permissionIndex.index(user);
+
+        permissionService = new PermissionService();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                user.getUname(), null, List.of(new SimpleGrantedAuthority("ROLE_MANAGER"),
+                        new SimpleGrantedAuthority("EXPORT_REPORT"))));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public UserRolePermissionDto addRoles() {
+        UserRolePermissionDto dto = new UserRolePermissionDto();
+        for (Role role : user.getRoles()) {
+            dto.addRole(role);
+        }
+        return dto;
+    }
+
+    // 角色权限展开在getUserPermissions中完成，每次调用都会重新计算
+    @Benchmark
+    public boolean serviceHasPermission() {
+        return permissionService.hasPermission(Permission.READ_USER, Permission.UPDATE_PROFILE);
+    }
+
+    @Benchmark
+    public Set<String> serviceGetUserRoles() {
+        return permissionService.getUserRoles();
+    }
+
+    @Benchmark
+    public boolean indexHasPermissionById() {
+        return permissionIndex.hasPermission(user.getUid(), lastPermissionId);
+    }
+
+    @Benchmark
+    public boolean indexHasPermissionByName() {
+        return permissionIndex.hasPermission(user.getUid(), lastPermissionName);
+    }
+
+    @Benchmark
+    public List<Long> indexGetPermissionIds() {
+        return permissionIndex.getPermissionIds(user.getUid());
+    }
+}
@@ -0,0 +1,82 @@
+package com.springboot.logindemo.benchmark;
+
+import com.springboot.logindemo.cache.UserCache;
+import com.springboot.logindemo.config.RedisConfig;
+import com.springboot.logindemo.domain.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较原有JSON格式与二进制格式对用户缓存快照的序列化开销，启动时打印两种格式的数据大小
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisSerializerBenchmark {
+
+    @Param({ "1", "5" })
+    public int roles;
+
+    private RedisSerializer<Object> json;
+    private RedisSerializer<Object> binary;
+    private User user;
+    private byte[] jsonBytes;
+    private byte[] binaryBytes;
+
+    @Setup
+    public void setup() {
+        json = RedisConfig.jsonSerializer();
+        binary = RedisConfig.binarySerializer();
+        user = UserCache.snapshot(Fixtures.populatedUser(roles, 10));
+        jsonBytes = json.serialize(user);
+        binaryBytes = binary.serialize(user);
+        System.out.printf("%n[roles=%d] json=%d bytes, binary=%d bytes%n", roles, jsonBytes.length,
+                binaryBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return json.serialize(user);
+    }
+
+    @Benchmark
+    public Object jsonDeserialize() {
+        return json.deserialize(jsonBytes);
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return binary.serialize(user);
+    }
+
+    @Benchmark
+    public Object binaryDeserialize() {
+        return binary.deserialize(binaryBytes);
+    }
+
+    // 写入后再读回，对应一次缓存写入加一次命中
+    @Benchmark
+    public Object jsonRoundTrip() {
+        return json.deserialize(json.serialize(user));
+    }
+
+    @Benchmark
+    public Object binaryRoundTrip() {
+        return binary.deserialize(binary.serialize(user));
+    }
+}
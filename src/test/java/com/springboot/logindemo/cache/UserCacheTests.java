@@ -0,0 +1,103 @@
+package com.springboot.logindemo.cache;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.springboot.logindemo.config.RedisConfig;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.repository.UserDao;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * 加载期间被清除的用户快照不能写回Redis。Redis为进程内的jedis-mock。
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:usercache;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ UserCache.class, UserCacheTests.Config.class })
+class UserCacheTests {
+
+    private static final RedisServer REDIS = startRedis();
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        LettuceConnectionFactory redisConnectionFactory() {
+            return new LettuceConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getBindPort()));
+        }
+
+        @Bean
+        RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
+            return new RedisConfig().redisTemplate(factory);
+        }
+
+        @Bean
+        StringRedisTemplate stringRedisTemplate(RedisConnectionFactory factory) {
+            return new StringRedisTemplate(factory);
+        }
+    }
+
+    @MockitoBean
+    private UserDao userDao;
+
+    @Resource
+    private UserCache userCache;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        REDIS.stop();
+    }
+
+    @Test
+    void skipsSnapshotEvictedDuringLoad() {
+        Long uid = 1L;
+        User user = new User();
+        user.setUid(uid);
+        user.setUname("cache");
+        user.setPhonenum("13800000000");
+
+        // 读取版本之后、查询数据库之前，另一个请求修改了该用户并清除缓存
+        when(userDao.findWithRolesByUid(uid)).thenAnswer(invocation -> {
+            userCache.evictById(uid);
+            return Optional.of(user);
+        }).thenReturn(Optional.of(user));
+
+        assertNotNull(userCache.getByUid(uid));
+        assertFalse(redisTemplate.hasKey("user:" + uid));
+
+        // 没有并发清除时正常写回
+        userCache.evictById(uid);
+        assertNotNull(userCache.getByUid(uid));
+        assertInstanceOf(User.class, redisTemplate.opsForValue().get("user:" + uid));
+    }
+
+    private static RedisServer startRedis() {
+        try {
+            return RedisServer.newRedisServer().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
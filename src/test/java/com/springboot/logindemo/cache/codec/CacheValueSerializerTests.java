@@ -0,0 +1,61 @@
+package com.springboot.logindemo.cache.codec;
+
+import com.springboot.logindemo.benchmark.Fixtures;
+import com.springboot.logindemo.config.RedisConfig;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheValueSerializerTests {
+
+    private final CacheValueSerializer serializer = RedisConfig.binarySerializer();
+
+    @Test
+    void userRoundTripWithoutPassword() {
+        User user = Fixtures.populatedUser(3, 4);
+        user.setPassword("secret");
+        // 整数字段不限于一个字节的范围
+        user.setLoginPermission(300);
+        user.setAdminPermission(-128);
+
+        byte[] bytes = serializer.serialize(user);
+        assertEquals(CacheValueSerializer.MAGIC, bytes[0]);
+
+        User copy = (User) serializer.deserialize(bytes);
+        assertEquals(user.getUid(), copy.getUid());
+        assertEquals(user.getPhonenum(), copy.getPhonenum());
+        assertEquals(user.getCreateTime(), copy.getCreateTime());
+        assertNull(copy.getPassword());
+        assertEquals(300, copy.getLoginPermission());
+        assertEquals(-128, copy.getAdminPermission());
+        assertEquals(3, copy.getRoles().size());
+        for (Role role : copy.getRoles()) {
+            assertEquals(4, role.getPermissions().size());
+        }
+    }
+
+    @Test
+    void scalarsAndUnregisteredTypes() {
+        assertEquals(42L, serializer.deserialize(serializer.serialize(42L)));
+        assertEquals("1234", serializer.deserialize(serializer.serialize("1234")));
+
+        byte[] bytes = serializer.serialize(new HashMap<>(Map.of("k", "v")));
+        assertEquals(CacheValueSerializer.JSON_TAG, bytes[1]);
+        assertEquals(Map.of("k", "v"), serializer.deserialize(bytes));
+    }
+
+    @Test
+    void readsLegacyJsonEntries() {
+        User user = Fixtures.populatedUser(1, 2);
+        byte[] legacy = RedisConfig.jsonSerializer().serialize(user);
+
+        User copy = (User) serializer.deserialize(legacy);
+        assertEquals(user.getUname(), copy.getUname());
+        assertEquals(1, copy.getRoles().size());
+    }
+}
@@ -0,0 +1,382 @@
+package com.springboot.logindemo.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.logindemo.security.PasswordHasher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 端到端压测：在本进程内以H2和Redis替身启动服务（见LoadTestServer），批量写入压测数据后，
+ * 按配置的请求配比并发访问登录、用户信息、角色权限、部门列表和认证提交接口，
+ * 输出各接口及总体的吞吐量和p50/p99/p999延迟，并把结果写成JSON，便于对比不同提交或配置。
+ * <p>
+ * 参数均为系统属性（括号内为默认值）：
+ * <pre>
+ * loadtest.users(1000) loadtest.roles(20) loadtest.departments(50)  压测数据规模
+ * loadtest.concurrency(200)                                          并发用户数
+ * loadtest.seconds(30) loadtest.warmup-seconds(5)                    正式压测与预热时长
+ * loadtest.mix(login=1,info=4,permissions=3,departments=1,authentication=1)  请求配比
+ * loadtest.label(default) loadtest.output(target/loadtest-result.json)
+ * loadtest.server-args                                               传给服务的额外启动参数，空格分隔
+ * </pre>
+ * 例如比较虚拟线程模式：
+ * <pre>
+ * mvn -P loadtest verify -Dloadtest.args="-Dloadtest.label=virtual -Dloadtest.server-args=--spring.threads.virtual.enabled=true"
+ * </pre>
+ * 接口出错时仍返回HTTP 200，因此以响应体中的code是否为200判断成功；HTTP 429单独计为rejected。
+ */
+public class LoadTestHarness {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private static final String SUCCESS = "\"code\":\"200\"";
+
+    enum Endpoint {
+        LOGIN("login", "/api/user/login/password"),
+        INFO("info", "/api/user/info"),
+        PERMISSIONS("permissions", "/api/user/roles/permissions"),
+        DEPARTMENTS("departments", "/api/department/all"),
+        AUTHENTICATION("authentication", "/api/authentication/submit");
+
+        private final String key;
+        private final String path;
+
+        Endpoint(String key, String path) {
+            this.key = key;
+            this.path = path;
+        }
+
+        static Endpoint of(String key) {
+            for (Endpoint endpoint : values()) {
+                if (endpoint.key.equals(key)) {
+                    return endpoint;
+                }
+            }
+            throw new IllegalArgumentException("未知的接口: " + key);
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    private final String baseUrl;
+
+    private final int users;
+
+    private final Endpoint[] endpoints;
+
+    // 按配比累加的权重，随机数落在哪个区间就请求哪个接口
+    private final int[] cumulativeWeights;
+
+    private String adminToken;
+
+    LoadTestHarness(String baseUrl, int users, Map<Endpoint, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.endpoints = mix.keySet().toArray(Endpoint[]::new);
+        this.cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += mix.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("请求配比的权重之和必须大于0");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("loadtest.users", 1000);
+        int roles = Integer.getInteger("loadtest.roles", 20);
+        int departments = Integer.getInteger("loadtest.departments", 50);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 200);
+        int seconds = Integer.getInteger("loadtest.seconds", 30);
+        int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 5);
+        String mixSpec = System.getProperty("loadtest.mix",
+                "login=1,info=4,permissions=3,departments=1,authentication=1");
+        String label = System.getProperty("loadtest.label", "default");
+        File output = new File(System.getProperty("loadtest.output", "target/loadtest-result.json"));
+
+        List<String> serverArgs = new ArrayList<>(List.of(args));
+        String extra = System.getProperty("loadtest.server-args", "").trim();
+        if (!extra.isEmpty()) {
+            serverArgs.addAll(List.of(extra.split("\\s+")));
+        }
+
+        try (LoadTestServer server = LoadTestServer.start(serverArgs.toArray(String[]::new))) {
+            long seedStart = System.nanoTime();
+            String passwordHash = server.getBean(PasswordHasher.class).encode(LoadTestSeeder.PASSWORD);
+            new LoadTestSeeder(server.getBean(JdbcTemplate.class)).seed(users, roles, departments, passwordHash);
+            System.out.printf("已写入%d个用户、%d个角色、%d个部门，耗时%.1fs%n", users, roles, departments,
+                    (System.nanoTime() - seedStart) / 1e9);
+
+            LoadTestHarness harness = new LoadTestHarness(server.baseUrl(), users, parseMix(mixSpec));
+            harness.adminToken = harness.login(LoadTestSeeder.account(0));
+            if (harness.adminToken == null) {
+                throw new IllegalStateException("管理员登录失败，无法获取token");
+            }
+
+            if (warmupSeconds > 0) {
+                harness.run(Math.min(concurrency, 50), warmupSeconds);
+            }
+            Report report = harness.run(concurrency, seconds);
+
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("users", users);
+            config.put("roles", roles);
+            config.put("departments", departments);
+            config.put("concurrency", concurrency);
+            config.put("seconds", seconds);
+            config.put("warmupSeconds", warmupSeconds);
+            config.put("mix", mixSpec);
+            config.put("serverArgs", serverArgs);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("label", label);
+            result.put("timestamp", OffsetDateTime.now().toString());
+            result.put("config", config);
+            result.put("total", report.total.toMap(report.elapsedNanos));
+            Map<String, Object> byEndpoint = new LinkedHashMap<>();
+            report.endpoints.forEach((endpoint, stats) -> byEndpoint.put(endpoint.key, stats.toMap(report.elapsedNanos)));
+            result.put("endpoints", byEndpoint);
+
+            File parent = output.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output, result);
+
+            report.endpoints.forEach((endpoint, stats) -> System.out.println(stats.format(label, endpoint.path,
+                    report.elapsedNanos)));
+            System.out.println(report.total.format(label, "total", report.elapsedNanos));
+            System.out.println("结果已写入 " + output.getAbsolutePath());
+        }
+    }
+
+    // 解析 login=1,info=4 形式的请求配比，权重为0的接口不参与
+    static Map<Endpoint, Integer> parseMix(String spec) {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("无效的请求配比: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                mix.put(Endpoint.of(pair[0].trim()), weight);
+            }
+        }
+        return mix;
+    }
+
+    // 每个并发用户先以一个压测账号登录，然后在截止时间前按配比循环发送请求
+    private Report run(int concurrency, int seconds) throws Exception {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            String token = login(LoadTestSeeder.account(i % users));
+            if (token == null) {
+                throw new IllegalStateException("压测账号登录失败: " + LoadTestSeeder.account(i % users));
+            }
+            tokens.add(token);
+        }
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<Map<Endpoint, Stats>>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String token : tokens) {
+                futures.add(workers.submit(() -> {
+                    Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        Endpoint endpoint = next(random);
+                        HttpRequest request = request(endpoint, token, random);
+                        Stats endpointStats = stats.computeIfAbsent(endpoint, e -> new Stats());
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            long latency = System.nanoTime() - begin;
+                            if (response.statusCode() == 429) {
+                                endpointStats.reject(latency);
+                            } else if (response.statusCode() != 200 || !response.body().contains(SUCCESS)) {
+                                endpointStats.fail(latency, response.statusCode() + " " + response.body());
+                            } else {
+                                endpointStats.succeed(latency);
+                            }
+                        } catch (Exception e) {
+                            endpointStats.fail(System.nanoTime() - begin, e.toString());
+                        }
+                    }
+                    return stats;
+                }));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<Endpoint, Stats> merged = new EnumMap<>(Endpoint.class);
+        Stats total = new Stats();
+        for (Future<Map<Endpoint, Stats>> future : futures) {
+            future.get().forEach((endpoint, stats) -> {
+                merged.computeIfAbsent(endpoint, e -> new Stats()).merge(stats);
+                total.merge(stats);
+            });
+        }
+        merged.values().forEach(Stats::sort);
+        total.sort();
+        return new Report(merged, total, elapsed);
+    }
+
+    private Endpoint next(ThreadLocalRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        return endpoints[endpoints.length - 1];
+    }
+
+    private HttpRequest request(Endpoint endpoint, String token, ThreadLocalRandom random) {
+        return switch (endpoint) {
+            // 登录随机选择账号，避免只压测同一个用户的缓存
+            case LOGIN -> loginRequest(LoadTestSeeder.account(random.nextInt(users)));
+            case INFO, PERMISSIONS -> get(endpoint, token);
+            // 部门列表需要管理员权限
+            case DEPARTMENTS -> get(endpoint, adminToken);
+            case AUTHENTICATION -> post(endpoint, "{\"token\":\"" + token + "\",\"authType\":\"natural\","
+                    + "\"authMethod\":\"national\",\"name\":\"压测用户\",\"idCard\":\"110101199001011234\","
+                    + "\"phone\":\"13900000000\",\"bankCard\":\"6222020200000000000\"}");
+        };
+    }
+
+    private HttpRequest get(Endpoint endpoint, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path + "?token="
+                + URLEncoder.encode(token, StandardCharsets.UTF_8))).GET().build();
+    }
+
+    private HttpRequest post(Endpoint endpoint, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest loginRequest(String account) {
+        return post(Endpoint.LOGIN, "{\"account\":\"" + account + "\",\"password\":\"" + LoadTestSeeder.PASSWORD
+                + "\"}");
+    }
+
+    private String login(String account) throws Exception {
+        HttpResponse<String> response = client.send(loginRequest(account), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(response.body());
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private record Report(Map<Endpoint, Stats> endpoints, Stats total, long elapsedNanos) {
+    }
+
+    /**
+     * 一个接口（或全部接口）的延迟样本与错误计数
+     */
+    private static final class Stats {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+        private long rejected;
+        private String sampleError;
+
+        void succeed(long latency) {
+            add(latency);
+        }
+
+        void reject(long latency) {
+            add(latency);
+            rejected++;
+        }
+
+        void fail(long latency, String message) {
+            add(latency);
+            errors++;
+            if (sampleError == null) {
+                sampleError = message.length() > 300 ? message.substring(0, 300) : message;
+            }
+        }
+
+        private void add(long latency) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latency;
+        }
+
+        void merge(Stats other) {
+            if (size + other.size > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, size + other.size));
+            }
+            System.arraycopy(other.latencies, 0, latencies, size, other.size);
+            size += other.size;
+            errors += other.errors;
+            rejected += other.rejected;
+            if (sampleError == null) {
+                sampleError = other.sampleError;
+            }
+        }
+
+        void sort() {
+            Arrays.sort(latencies, 0, size);
+        }
+
+        Map<String, Object> toMap(long elapsedNanos) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", size);
+            map.put("rps", Math.round(size / (elapsedNanos / 1e9) * 10) / 10.0);
+            map.put("p50Ms", percentile(0.50));
+            map.put("p99Ms", percentile(0.99));
+            map.put("p999Ms", percentile(0.999));
+            map.put("maxMs", percentile(1.0));
+            map.put("errors", errors);
+            map.put("rejected", rejected);
+            if (sampleError != null) {
+                map.put("sampleError", sampleError);
+            }
+            return map;
+        }
+
+        String format(String label, String path, long elapsedNanos) {
+            return String.format("%s %s requests=%d rps=%.1f p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms "
+                    + "errors=%d rejected=%d", label, path, size, size / (elapsedNanos / 1e9), percentile(0.50),
+                    percentile(0.99), percentile(0.999), percentile(1.0), errors, rejected);
+        }
+
+        private double percentile(double p) {
+            if (size == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * size) - 1;
+            return Math.round(latencies[Math.max(0, Math.min(index, size - 1))] / 1e4) / 100.0;
+        }
+    }
+}
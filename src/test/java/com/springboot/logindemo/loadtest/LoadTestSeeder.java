@@ -0,0 +1,124 @@
+package com.springboot.logindemo.loadtest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用JDBC批量插入压测数据：N个用户、M个角色（第一个为管理员）、K个部门，每个角色5个权限。
+ * 所有用户使用同一个密码，只加密一次；用户i的手机号为 139 + 8位序号，第0个用户是管理员。
+ */
+class LoadTestSeeder {
+
+    static final String PASSWORD = "123456";
+
+    private static final int PERMISSIONS_PER_ROLE = 5;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    LoadTestSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    static String account(int index) {
+        return String.format("139%08d", index);
+    }
+
+    /**
+     * 插入压测数据
+     *
+     * @param users          用户数
+     * @param roles          角色数（至少2个）
+     * @param departments    部门数
+     * @param passwordHash   PASSWORD的加密结果
+     */
+    void seed(int users, int roles, int departments, String passwordHash) {
+        if (users < 1 || roles < 2 || departments < 1) {
+            throw new IllegalArgumentException("至少需要1个用户、2个角色和1个部门");
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int d = 0; d < departments; d++) {
+            rows.add(new Object[] { "部门" + d, "压测部门" + d, now, now });
+        }
+        insert("INSERT INTO departments (name, description, active, create_time, update_time) VALUES (?, ?, 1, ?, ?)",
+                rows);
+        long[] departmentIds = ids("departments");
+
+        rows.clear();
+        for (int p = 0; p < roles * PERMISSIONS_PER_ROLE; p++) {
+            rows.add(new Object[] { "perm:" + p, "压测权限" + p, now, now });
+        }
+        insert("INSERT INTO permissions (name, description, active, create_time, update_time) VALUES (?, ?, 1, ?, ?)",
+                rows);
+        long[] permissionIds = ids("permissions");
+
+        rows.clear();
+        for (int r = 0; r < roles; r++) {
+            rows.add(new Object[] { r == 0 ? "管理员" : "角色" + r, "压测角色" + r, now, now });
+        }
+        insert("INSERT INTO roles (name, description, active, create_time, update_time) VALUES (?, ?, 1, ?, ?)", rows);
+        long[] roleIds = ids("roles");
+
+        rows.clear();
+        for (int r = 0; r < roles; r++) {
+            for (int p = 0; p < PERMISSIONS_PER_ROLE; p++) {
+                rows.add(new Object[] { roleIds[r], permissionIds[r * PERMISSIONS_PER_ROLE + p] });
+            }
+        }
+        insert("INSERT INTO role_permissions (role_id, permission_id) VALUES (?, ?)", rows);
+
+        rows.clear();
+        for (int r = 0; r < roles; r++) {
+            rows.add(new Object[] { roleIds[r], departmentIds[r % departments] });
+        }
+        insert("INSERT INTO role_departments (role_id, department_id) VALUES (?, ?)", rows);
+
+        rows.clear();
+        for (int u = 0; u < users; u++) {
+            rows.add(new Object[] { "user" + u, passwordHash, account(u), u == 0 ? 1 : 0,
+                    departmentIds[u % departments], now, now });
+        }
+        insert("INSERT INTO user (uname, password, phonenum, login_permission, admin_permission, "
+                + "primary_department_id, create_time, update_time) VALUES (?, ?, ?, 1, ?, ?, ?, ?)", rows);
+        long[] userIds = ids("user", "uid");
+
+        // 管理员只持有管理员角色，普通用户持有两个普通角色
+        rows.clear();
+        List<Object[]> memberships = new ArrayList<>();
+        rows.add(new Object[] { userIds[0], roleIds[0], now });
+        memberships.add(new Object[] { userIds[0], departmentIds[0] });
+        for (int u = 1; u < users; u++) {
+            int first = 1 + u % (roles - 1);
+            int second = 1 + (u * 7) % (roles - 1);
+            rows.add(new Object[] { userIds[u], roleIds[first], now });
+            if (second != first) {
+                rows.add(new Object[] { userIds[u], roleIds[second], now });
+            }
+            memberships.add(new Object[] { userIds[u], departmentIds[u % departments] });
+        }
+        insert("INSERT INTO user_roles (user_id, role_id, create_time) VALUES (?, ?, ?)", rows);
+        insert("INSERT INTO user_departments (user_id, department_id) VALUES (?, ?)", memberships);
+    }
+
+    private void insert(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    private long[] ids(String table) {
+        return ids(table, "id");
+    }
+
+    private long[] ids(String table, String column) {
+        return jdbcTemplate.queryForList("SELECT " + column + " FROM " + table + " ORDER BY " + column, Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,101 @@
+package com.springboot.logindemo.loadtest;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.server.MockExecutor;
+import com.github.fppt.jedismock.server.ServiceOptions;
+import com.springboot.logindemo.LogindemoApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不依赖外部MySQL和Redis启动完整服务：数据库为MySQL模式的H2内存库，Redis为进程内的jedis-mock。
+ * 短信使用本地模拟发送，验证码存储在内存中；其余配置与application.properties一致，
+ * 可通过额外的命令行参数覆盖（如--spring.threads.virtual.enabled=true）。
+ */
+class LoadTestServer implements AutoCloseable {
+
+    private final RedisServer redis;
+
+    private final ConfigurableApplicationContext context;
+
+    private LoadTestServer(RedisServer redis, ConfigurableApplicationContext context) {
+        this.redis = redis;
+        this.context = context;
+    }
+
+    static LoadTestServer start(String... overrides) throws IOException {
+        // jedis-mock把一次订阅多个频道的回复合并成一个数组，Lettuce只能识别第一个频道，因此拆成逐个订阅
+        RedisServer redis = RedisServer.newRedisServer().setOptions(ServiceOptions.withInterceptor((state, name, params) -> {
+            if (!"subscribe".equalsIgnoreCase(name) || params.size() < 2) {
+                return MockExecutor.proceed(state, name, params);
+            }
+            ByteArrayOutputStream replies = new ByteArrayOutputStream();
+            for (Slice channel : params) {
+                replies.writeBytes(MockExecutor.proceed(state, name, List.of(channel)).data());
+            }
+            return Slice.create(replies.toByteArray());
+        }));
+        redis.start();
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("management.server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.data.redis.host", redis.getHost());
+        properties.put("spring.data.redis.port", String.valueOf(redis.getBindPort()));
+        properties.put("sms.provider", "local");
+        properties.put("verify-code.store", "memory");
+        properties.put("file.upload.path", System.getProperty("java.io.tmpdir") + "/logindemo-loadtest");
+        properties.put("file.access.signing-key", "loadtest-signing-key");
+        properties.put("logging.level.root", "WARN");
+
+        // 同名的命令行参数会被拼接成逗号分隔的值，因此覆盖项替换默认值而不是追加
+        List<String> args = new ArrayList<>();
+        for (String override : overrides) {
+            int separator = override.indexOf('=');
+            if (override.startsWith("--") && separator > 2) {
+                properties.put(override.substring(2, separator), override.substring(separator + 1));
+            } else {
+                args.add(override);
+            }
+        }
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        try {
+            return new LoadTestServer(redis, SpringApplication.run(LogindemoApplication.class, args.toArray(String[]::new)));
+        } catch (RuntimeException e) {
+            redis.stop();
+            throw e;
+        }
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            context.close();
+        } finally {
+            redis.stop();
+        }
+    }
+}
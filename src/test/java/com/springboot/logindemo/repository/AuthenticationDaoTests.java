@@ -0,0 +1,95 @@
+package com.springboot.logindemo.repository;
+
+import com.springboot.logindemo.dao.AuthenticationDao;
+import com.springboot.logindemo.dao.LatestAuthentication;
+import com.springboot.logindemo.domain.Authentication;
+import com.springboot.logindemo.domain.Enterprise;
+import jakarta.annotation.Resource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:authentication;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AuthenticationDaoTests {
+
+    @Resource
+    private AuthenticationDao authenticationDao;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    @Resource
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void findsLatestAuthenticationWithDetailsInOneQuery() {
+        LocalDateTime now = LocalDateTime.now();
+        authentication(1L, "natural", now.minusDays(2));
+        // 最新的记录不是ID最大的记录，验证按创建时间排序
+        Authentication latest = authentication(1L, "enterprise", now);
+        authentication(1L, "individual", now.minusDays(1));
+        authentication(2L, "enterprise", now.plusDays(1));
+        Enterprise enterprise = new Enterprise();
+        enterprise.setAuthId(latest.getId());
+        enterprise.setName("某某科技有限公司");
+        enterprise.setTaxNo("91110000000000000X");
+        enterprise.setAddress("北京市");
+        enterprise.setLicenseFile("http://localhost/files/license.pdf");
+        entityManager.persist(enterprise);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        LatestAuthentication found = authenticationDao.findLatestByUserId(1L);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(latest.getId(), found.getAuthId());
+        assertEquals("enterprise", found.getAuthType());
+        assertEquals(0, found.getAuthStatus());
+        assertEquals(enterprise.getId(), found.getDetailId());
+        assertEquals("某某科技有限公司", found.getName());
+        assertEquals("91110000000000000X", found.getTaxNo());
+        assertEquals("http://localhost/files/license.pdf", found.getLicenseFile());
+        assertNull(found.getIdCard());
+    }
+
+    @Test
+    void reportsMissingDetailsAndMissingAuthentication() {
+        authentication(3L, "natural", LocalDateTime.now());
+        entityManager.flush();
+        entityManager.clear();
+
+        LatestAuthentication found = authenticationDao.findLatestByUserId(3L);
+        assertEquals("natural", found.getAuthType());
+        assertNull(found.getDetailId());
+        assertNull(authenticationDao.findLatestByUserId(4L));
+    }
+
+    private Authentication authentication(Long userId, String authType, LocalDateTime createTime) {
+        Authentication authentication = new Authentication();
+        authentication.setUserId(userId);
+        authentication.setAuthType(authType);
+        authentication.setAuthMethod("upload");
+        entityManager.persistAndFlush(authentication);
+        // 创建时间由@PrePersist填写，这里改为指定的时间
+        entityManager.getEntityManager()
+                .createQuery("UPDATE Authentication a SET a.createTime = :createTime WHERE a.id = :id")
+                .setParameter("createTime", createTime)
+                .setParameter("id", authentication.getId())
+                .executeUpdate();
+        return authentication;
+    }
+}
@@ -0,0 +1,124 @@
+package com.springboot.logindemo.repository;
+
+import com.springboot.logindemo.domain.Permission;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.security.PermissionIndex;
+import jakarta.annotation.Resource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:refcache;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // 二级缓存在事务提交后才写入
+@Import(PermissionIndex.class)
+class ReferenceDataCacheTests {
+
+    @MockitoBean
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private PermissionIndex permissionIndex;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private RoleDao roleDao;
+
+    @Resource
+    private PermissionDao permissionDao;
+
+    @Resource
+    private EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void repeatedLookupsAreServedFromCacheUntilModified() {
+        Permission read = permissionDao.save(permission("cache:read"));
+        Permission write = permissionDao.save(permission("cache:write"));
+        Set<Long> ids = Set.of(read.getId(), write.getId());
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long roleId = tx.execute(status -> {
+            Role role = new Role();
+            role.setName("缓存测试");
+            role.setPermissions(permissionDao.findByIdIn(ids));
+            return roleDao.save(role).getId();
+        });
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        tx.executeWithoutResult(status -> permissionDao.findByIdIn(ids));
+        tx.executeWithoutResult(status -> roleDao.findById(roleId).orElseThrow().getPermissions().size());
+
+        // 第二次起实体、集合和查询结果都从缓存读取
+        statistics.clear();
+        assertEquals(2, tx.execute(status -> permissionDao.findByIdIn(ids)).size());
+        int permissionCount = tx.execute(status -> roleDao.findById(roleId).orElseThrow().getPermissions().size());
+        assertEquals(2, permissionCount);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+
+        // 修改权限后查询缓存失效，重新查询得到新状态
+        tx.executeWithoutResult(status -> permissionDao.findById(write.getId()).orElseThrow().setActive(0));
+        statistics.clear();
+        Set<Integer> states = tx.execute(status -> permissionDao.findByIdIn(ids).stream()
+                .map(Permission::getActive).collect(Collectors.toSet()));
+        assertEquals(Set.of(0, 1), states);
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        // 修改角色的权限后集合缓存随之更新
+        tx.executeWithoutResult(status -> roleDao.findById(roleId).orElseThrow().getPermissions()
+                .removeIf(permission -> permission.getId().equals(read.getId())));
+        assertEquals(Set.of(write.getId()), tx.execute(status -> roleDao.findById(roleId).orElseThrow()
+                .getPermissions().stream().map(Permission::getId).collect(Collectors.toSet())));
+    }
+
+    @Test
+    void evictsWhenAnotherNodeChangesRolesOrPermissions() {
+        Permission permission = permissionDao.save(permission("cache:remote"));
+        assertEquals(1, activeOf(permission.getId()));
+
+        // 其他节点直接改了数据库，本节点的二级缓存仍是旧值
+        jdbcTemplate.update("UPDATE permissions SET active = 0 WHERE id = ?", permission.getId());
+        assertEquals(1, activeOf(permission.getId()));
+
+        permissionIndex.onMessage(new DefaultMessage(PermissionIndex.INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                ("perm:" + permission.getId()).getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(0, activeOf(permission.getId()));
+    }
+
+    private int activeOf(Long permissionId) {
+        return new TransactionTemplate(transactionManager)
+                .execute(status -> permissionDao.findById(permissionId).orElseThrow().getActive());
+    }
+
+    private static Permission permission(String name) {
+        Permission permission = new Permission();
+        permission.setName(name);
+        return permission;
+    }
+}
@@ -0,0 +1,73 @@
+package com.springboot.logindemo.repository;
+
+import com.springboot.logindemo.domain.Department;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.dto.UserSummaryDto;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:paging;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserDaoPagingTests {
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    @Test
+    void seeksPastCursorWithFilters() {
+        Department department = new Department();
+        department.setName("研发部");
+        entityManager.persist(department);
+        Role role = new Role();
+        role.setName("员工");
+        entityManager.persist(role);
+
+        List<Long> uids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            User user = new User();
+            user.setUname("user" + i);
+            user.setPhonenum("1380000000" + i);
+            user.setPassword("x");
+            user.setLoginPermission(i % 3 == 0 ? 0 : 1);
+            user.setRoles(Set.of(role));
+            if (i % 2 == 0) {
+                user.setDepartments(Set.of(department));
+            }
+            uids.add(entityManager.persist(user).getUid());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<UserSummaryDto> first = userDao.findSummariesAfter(0L, null, null, PageRequest.of(0, 3));
+        assertEquals(uids.subList(0, 3), first.stream().map(UserSummaryDto::getUid).toList());
+        List<UserSummaryDto> second = userDao.findSummariesAfter(first.get(2).getUid(), null, null,
+                PageRequest.of(0, 3));
+        assertEquals(uids.subList(3, 6), second.stream().map(UserSummaryDto::getUid).toList());
+
+        List<UserSummaryDto> enabledInDepartment = userDao.findSummariesAfter(0L, 1, department.getId(),
+                PageRequest.of(0, 10));
+        // 偶数下标在部门中，下标为3的倍数被禁止登录：只剩2和4
+        assertEquals(List.of(uids.get(2), uids.get(4)),
+                enabledInDepartment.stream().map(UserSummaryDto::getUid).toList());
+
+        List<Object[]> roles = userDao.findRoleSummaries(List.of(uids.get(0), uids.get(1)));
+        assertEquals(2, roles.size());
+        assertEquals("员工", roles.get(0)[2]);
+    }
+}
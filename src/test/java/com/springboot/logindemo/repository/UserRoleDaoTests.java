@@ -0,0 +1,66 @@
+package com.springboot.logindemo.repository;
+
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userroles;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserRoleDaoTests {
+
+    @Resource
+    private UserRoleDao userRoleDao;
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    @Test
+    void insertsMissingPairsAndDeletesBySet() {
+        Role admin = role("管理员");
+        Role staff = role("员工");
+        User first = user("13800000001", Set.of(staff));
+        User second = user("13800000002", Set.of());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> uids = List.of(first.getUid(), second.getUid());
+        // first已有员工角色，只新增3行
+        assertEquals(3, userRoleDao.insertIgnore(uids, List.of(admin.getId(), staff.getId())));
+        assertEquals(0, userRoleDao.insertIgnore(uids, List.of(admin.getId(), staff.getId())));
+        assertEquals(2, userDao.findById(second.getUid()).orElseThrow().getRoles().size());
+
+        assertEquals(2, userRoleDao.deleteByUsersAndRoles(uids, List.of(staff.getId())));
+        User reloaded = userDao.findById(first.getUid()).orElseThrow();
+        assertEquals(Set.of(admin.getId()), reloaded.getRoles().stream().map(Role::getId)
+                .collect(java.util.stream.Collectors.toSet()));
+    }
+
+    private Role role(String name) {
+        Role role = new Role();
+        role.setName(name);
+        return entityManager.persist(role);
+    }
+
+    private User user(String phone, Set<Role> roles) {
+        User user = new User();
+        user.setUname("u" + phone);
+        user.setPhonenum(phone);
+        user.setPassword("x");
+        user.setRoles(roles);
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,99 @@
+package com.springboot.logindemo.security;
+
+import com.springboot.logindemo.cache.UserCache;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:adminauth;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AdminAuthorization.class)
+class AdminAuthorizationTests {
+
+    @Resource
+    private AdminAuthorization adminAuthorization;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    @MockitoBean
+    private UserCache userCache;
+
+    @MockitoBean
+    private PermissionIndex permissionIndex;
+
+    @Test
+    void checksRolesAgainstCachedAdminIds() {
+        Role admin = role("系统管理员");
+        Role staff = role("员工");
+        entityManager.flush();
+        when(userCache.getByAccount("13800000001")).thenReturn(user(1L, admin, staff));
+        when(userCache.getByAccount("13800000002")).thenReturn(user(2L, staff));
+        when(userCache.getByAccount("13800000003")).thenReturn(user(3L));
+        // 缓存的快照已过期：角色以权限索引为准
+        when(userCache.getByAccount("13800000005")).thenReturn(user(5L, admin));
+        when(permissionIndex.getRoleIds(1L)).thenReturn(List.of(admin.getId(), staff.getId()));
+        when(permissionIndex.getRoleIds(2L)).thenReturn(List.of(staff.getId()));
+        when(permissionIndex.getRoleIds(3L)).thenReturn(List.of());
+        when(permissionIndex.getRoleIds(5L)).thenReturn(List.of(staff.getId()));
+
+        adminAuthorization.validateAdmin("13800000001");
+        assertEquals("无管理员权限", assertThrows(RuntimeException.class,
+                () -> adminAuthorization.validateAdmin("13800000002")).getMessage());
+        assertEquals("用户没有任何角色", assertThrows(RuntimeException.class,
+                () -> adminAuthorization.validateAdmin("13800000003")).getMessage());
+        assertEquals("用户不存在", assertThrows(RuntimeException.class,
+                () -> adminAuthorization.validateAdmin("13800000004")).getMessage());
+        assertEquals("无管理员权限", assertThrows(RuntimeException.class,
+                () -> adminAuthorization.validateAdmin("13800000005")).getMessage());
+
+        // 未失效前复用同一份集合，失效后重新加载才能看到新角色
+        Set<Long> cached = adminAuthorization.adminRoleIds();
+        Role created = role("admin");
+        entityManager.flush();
+        assertSame(cached, adminAuthorization.adminRoleIds());
+        // 事务内的失效推迟到提交之后
+        adminAuthorization.invalidate();
+        assertSame(cached, adminAuthorization.adminRoleIds());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        assertEquals(Set.of(admin.getId(), created.getId()), adminAuthorization.adminRoleIds());
+    }
+
+    @Test
+    void matchesAdminRoleNames() {
+        assertTrue(AdminAuthorization.isAdminRoleName("ADMIN"));
+        assertTrue(AdminAuthorization.isAdminRoleName("superadmin"));
+        assertTrue(AdminAuthorization.isAdminRoleName("部门管理员"));
+        assertFalse(AdminAuthorization.isAdminRoleName("Administrator"));
+        assertFalse(AdminAuthorization.isAdminRoleName(null));
+    }
+
+    private Role role(String name) {
+        Role role = new Role();
+        role.setName(name);
+        return entityManager.persist(role);
+    }
+
+    private static User user(Long uid, Role... roles) {
+        User user = new User();
+        user.setUid(uid);
+        user.setRoles(Set.of(roles));
+        return user;
+    }
+}
@@ -0,0 +1,95 @@
+package com.springboot.logindemo.security;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTests {
+
+    @Test
+    void matchesAndRehashWhenStrengthChanges() throws Exception {
+        String oldHash = new BCryptPasswordEncoder(4).encode("secret");
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(5), 5, 1, 4);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        hasher.bindTo(registry);
+        try {
+            assertTrue(hasher.matches("secret", oldHash));
+            assertFalse(hasher.matches("wrong", oldHash));
+            assertTrue(hasher.needsRehash(oldHash));
+
+            CountDownLatch stored = new CountDownLatch(1);
+            AtomicReference<String> newHash = new AtomicReference<>();
+            hasher.rehashAsync("secret", hash -> {
+                newHash.set(hash);
+                stored.countDown();
+            });
+            assertTrue(stored.await(10, TimeUnit.SECONDS));
+            assertTrue(newHash.get().startsWith("$2a$05$"));
+            assertFalse(hasher.needsRehash(newHash.get()));
+            assertTrue(hasher.matches("secret", newHash.get()));
+
+            assertEquals(2, registry.get("password.hash").tag("cost", "4").timer().count());
+            assertTrue(registry.get("password.hash").tag("cost", "5").timer().count() >= 1);
+        } finally {
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void recordsLatencyPerCostAfterBinding() {
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(4), 4, 1, 4);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try {
+            hasher.bindTo(registry);
+            String hash = hasher.encode("secret");
+            assertTrue(hasher.matches("secret", hash));
+
+            Timer timer = registry.get("password.hash").tag("cost", "4").timer();
+            assertEquals(2, timer.count());
+            assertEquals(0.0, registry.get("password.hash.rejected").functionCounter().count());
+        } finally {
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        // 单线程、队列长度1，强度较高使任务排队
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(12), 12, 1, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        hasher.bindTo(registry);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> hasher.encode("secret"), callers));
+            }
+            int rejected = 0;
+            for (CompletableFuture<String> result : results) {
+                try {
+                    result.get(30, TimeUnit.SECONDS);
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertInstanceOf(PasswordHasherBusyException.class, e.getCause());
+                    rejected++;
+                }
+            }
+            assertTrue(rejected > 0);
+            assertEquals(rejected, registry.get("password.hash.rejected").functionCounter().count());
+        } finally {
+            callers.shutdownNow();
+            hasher.shutdown();
+        }
+    }
+}
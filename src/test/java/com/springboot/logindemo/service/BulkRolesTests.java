@@ -0,0 +1,118 @@
+package com.springboot.logindemo.service;
+
+import com.springboot.logindemo.cache.UserCache;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.dto.BulkRolesResultDto;
+import com.springboot.logindemo.security.AdminAuthorization;
+import com.springboot.logindemo.security.PasswordHasher;
+import com.springboot.logindemo.security.PermissionEpoch;
+import com.springboot.logindemo.security.PermissionIndex;
+import com.springboot.logindemo.service.serviceImpl.UserServiceImpl;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 超过批量阈值的角色修改：用户缓存、权限索引和权限纪元都要在提交之后失效，
+ * 提交前被并发请求用旧角色重建的缓存不能留下来。Redis被替换为mock。
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulkroles;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "password.bcrypt.strength=4" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ UserServiceImpl.class, UserCache.class, PermissionIndex.class, PermissionEpoch.class,
+        AdminAuthorization.class, PasswordHasher.class, BulkRolesTests.Config.class })
+class BulkRolesTests {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        BCryptPasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+    }
+
+    @MockitoBean
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @MockitoBean
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private UserCache userCache;
+
+    @Resource
+    private PermissionIndex permissionIndex;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    @Test
+    void evictsAfterCommitAboveBulkThreshold() throws Exception {
+        Role admin = role("管理员");
+        Role staff = role("员工");
+        user("13800000000", Set.of(admin));
+        Set<String> phones = new HashSet<>();
+        for (int i = 1; i <= UserCache.BULK_EVICT_THRESHOLD + 1; i++) {
+            phones.add(user(String.valueOf(13800000000L + i), Set.of()).getPhonenum());
+        }
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        TestTransaction.flagForCommit();
+        BulkRolesResultDto result = userService.bulkAssignRoles("13800000000", phones, Set.of(staff.getId()));
+        assertEquals(UserCache.BULK_EVICT_THRESHOLD + 1, result.getChangedRows());
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+
+        // 提交前其他请求读到的仍是旧角色，并写入缓存
+        User stale = CompletableFuture.supplyAsync(() -> userCache.getByAccount("13800000001")).get();
+        assertTrue(stale.getRoles().isEmpty());
+        assertFalse(CompletableFuture.supplyAsync(() -> permissionIndex.hasRole(stale.getUid(), staff.getId())).get());
+
+        TestTransaction.end();
+        verify(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+        verify(stringRedisTemplate, atLeast(2)).convertAndSend(UserCache.INVALIDATE_CHANNEL, UserCache.ALL);
+        assertEquals(1, userCache.getByAccount("13800000001").getRoles().size());
+        assertTrue(permissionIndex.hasRole(stale.getUid(), staff.getId()));
+    }
+
+    private Role role(String name) {
+        Role role = new Role();
+        role.setName(name);
+        return entityManager.persist(role);
+    }
+
+    private User user(String phone, Set<Role> roles) {
+        User user = new User();
+        user.setUname("u" + phone);
+        user.setPhonenum(phone);
+        user.setPassword("hash");
+        user.setRoles(roles);
+        return entityManager.persist(user);
+    }
+}
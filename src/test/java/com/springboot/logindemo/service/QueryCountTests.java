@@ -0,0 +1,249 @@
+package com.springboot.logindemo.service;
+
+import com.springboot.logindemo.cache.UserCache;
+import com.springboot.logindemo.domain.Department;
+import com.springboot.logindemo.domain.Permission;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.repository.UserDao;
+import com.springboot.logindemo.security.AdminAuthorization;
+import com.springboot.logindemo.security.PasswordHasher;
+import com.springboot.logindemo.security.PermissionEpoch;
+import com.springboot.logindemo.security.PermissionIndex;
+import com.springboot.logindemo.service.serviceImpl.DepartmentServiceImpl;
+import com.springboot.logindemo.service.serviceImpl.RolePermissionServiceImpl;
+import com.springboot.logindemo.service.serviceImpl.UserServiceImpl;
+import jakarta.annotation.Resource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.transaction.BeforeTransaction;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用Hibernate统计的SQL语句数锁定各读取路径的查询次数，关联改回EAGER或实体图失效时这里会失败。
+ * Redis被替换为空的mock，用户缓存只使用进程内一级缓存。
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querycount;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "password.bcrypt.strength=4" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ UserServiceImpl.class, DepartmentServiceImpl.class, RolePermissionServiceImpl.class,
+        CustomUserDetailsService.class, UserCache.class, PermissionIndex.class, PermissionEpoch.class,
+        AdminAuthorization.class, PasswordHasher.class, QueryCountTests.Config.class })
+class QueryCountTests {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        BCryptPasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+    }
+
+    @MockitoBean
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @MockitoBean
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private DepartmentService departmentService;
+
+    @Resource
+    private RolePermissionService rolePermissionService;
+
+    @Resource
+    private CustomUserDetailsService userDetailsService;
+
+    @Resource
+    private UserCache userCache;
+
+    @Resource
+    private PermissionIndex permissionIndex;
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private PasswordHasher passwordHasher;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    @Resource
+    private EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    private AdminAuthorization adminAuthorization;
+
+    private Statistics statistics;
+
+    private User admin;
+
+    // 各测试的数据在事务结束时回滚，缓存需在事务外清空，否则会残留上一个测试的ID
+    @BeforeTransaction
+    void resetCaches() {
+        userCache.evictAll();
+        permissionIndex.invalidateAll();
+        adminAuthorization.invalidate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Permission read = permission("user:read");
+        Permission write = permission("user:write");
+        Role adminRole = role("管理员", read, write);
+        Role staffRole = role("员工", read);
+        Department sales = new Department();
+        sales.setName("销售部");
+        entityManager.persist(sales);
+
+        admin = user("13800000000", "admin", Set.of(adminRole, staffRole));
+        admin.setDepartments(Set.of(sales));
+        admin.setPrimaryDepartment(sales);
+        user("13800000001", "staff1", Set.of(staffRole));
+        user("13800000002", "staff2", Set.of(staffRole));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void loginLoadsCredentialsThenRolesOnly() {
+        // 读取纪元的回调在加载角色之前收到uid
+        AtomicLong beforeLoad = new AtomicLong();
+        User user = count(2, () -> userService.loginService("13800000000", "secret", beforeLoad::set));
+        assertEquals(user.getUid(), beforeLoad.get());
+        assertTrue(Hibernate.isInitialized(user.getRoles()));
+        assertEquals(2, user.getRoles().size());
+        user.getRoles().forEach(role -> assertFalse(Hibernate.isInitialized(role.getPermissions())));
+
+        assertNull(count(1, () -> userService.loginService("13800000000", "wrong", uid -> {})));
+    }
+
+    @Test
+    void findByAccountLeavesRolesLazy() {
+        User user = count(1, () -> userService.findByAccount("staff1"));
+        assertFalse(Hibernate.isInitialized(user.getRoles()));
+    }
+
+    @Test
+    void cacheAndPermissionIndexLoadWholeGraphInOneQuery() {
+        User cached = count(1, () -> userCache.getByAccount("13800000001"));
+        // 快照只保存角色ID，名称和权限从二级缓存读取
+        assertNull(cached.getRoles().iterator().next().getName());
+        assertEquals("user:read", userCache.getRoles(cached).iterator().next().getPermissions().iterator().next()
+                .getName());
+        count(0, () -> userCache.getByAccount("13800000001"));
+        count(0, () -> userService.getUserRoleIds("13800000001", "13800000001"));
+
+        Long uid = cached.getUid();
+        assertTrue(count(1, () -> permissionIndex.hasPermission(uid, "user:read")));
+        assertFalse(count(0, () -> permissionIndex.hasPermission(uid, "user:write")));
+    }
+
+    @Test
+    void adminCheckIsCachedAfterFirstCall() {
+        // 管理员角色ID集合一条，操作者的用户快照一条，权限索引中操作者的角色一条
+        count(3, () -> {
+            adminAuthorization.validateAdmin("13800000000");
+            return null;
+        });
+        count(0, () -> {
+            adminAuthorization.validateAdmin("13800000000");
+            return null;
+        });
+    }
+
+    @Test
+    void readPathsUseEntityGraphs() {
+        warmAdminCheck();
+        assertEquals(4, count(1, () -> userDetailsService.loadUserByUsername("admin")).getAuthorities().size());
+        assertEquals(2, count(1, () -> userService.getUserRolePermissionByPhoneNum("13800000000")).getRoles().size());
+
+        Set<Department> departments = count(1, () -> departmentService.getUserDepartments("13800000000",
+                "13800000000"));
+        assertEquals(Set.of("销售部"), departments.stream().map(Department::getName).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void listsBatchFetchLazyAssociations() {
+        warmAdminCheck();
+        // 角色列表一条，访问各角色权限时一条IN查询
+        List<Role> roles = count(2, () -> {
+            List<Role> all = rolePermissionService.getAllRoles("13800000000");
+            all.forEach(role -> role.getPermissions().size());
+            return all;
+        });
+        assertEquals(2, roles.size());
+
+        // 三个用户：用户一条、角色一批、权限一批；主部门是懒加载，不再逐个查询
+        count(3, () -> {
+            List<User> users = userDao.findAll();
+            users.forEach(user -> user.getRoles().forEach(role -> role.getPermissions().size()));
+            return users;
+        });
+    }
+
+    private void warmAdminCheck() {
+        adminAuthorization.validateAdmin("13800000000");
+    }
+
+    // 执行前清空持久化上下文，保证每次都真正访问数据库
+    private <T> T count(long expected, Supplier<T> action) {
+        entityManager.clear();
+        statistics.clear();
+        T result = action.get();
+        assertEquals(expected, statistics.getPrepareStatementCount(), "SQL语句数");
+        return result;
+    }
+
+    private Permission permission(String name) {
+        Permission permission = new Permission();
+        permission.setName(name);
+        return entityManager.persist(permission);
+    }
+
+    private Role role(String name, Permission... permissions) {
+        Role role = new Role();
+        role.setName(name);
+        role.setPermissions(Set.of(permissions));
+        return entityManager.persist(role);
+    }
+
+    private User user(String phone, String uname, Set<Role> roles) {
+        User user = new User();
+        user.setUname(uname);
+        user.setPhonenum(phone);
+        user.setPassword(passwordHasher.encode("secret"));
+        user.setRoles(roles);
+        return entityManager.persist(user);
+    }
+}
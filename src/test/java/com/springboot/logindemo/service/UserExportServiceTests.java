@@ -0,0 +1,120 @@
+package com.springboot.logindemo.service;
+
+import com.springboot.logindemo.domain.Department;
+import com.springboot.logindemo.domain.Role;
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.service.serviceImpl.UserExportServiceImpl;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:export;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(UserExportServiceImpl.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class UserExportServiceTests {
+
+    @Resource
+    private UserExportService userExportService;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    @Test
+    void exportsEveryUserOnceWithRolesAndDepartments() throws Exception {
+        Role admin = role("管理员");
+        Role staff = role("员工");
+        Department rd = department("研发部");
+        Department ops = department("运维部");
+        // 1201个用户跨越多个批次，每人2个角色2个部门，JOIN FETCH时会产生4倍的行
+        for (int i = 0; i < 1201; i++) {
+            User user = new User();
+            user.setUname(i == 0 ? "张,\"三\"" : "user" + i);
+            user.setPhonenum(String.valueOf(13800000000L + i));
+            user.setPassword("hash");
+            user.setRoles(Set.of(admin, staff));
+            user.setDepartments(Set.of(rd, ops));
+            entityManager.persist(user);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        userExportService.exportUsers(UserExportService.CSV, csv);
+        String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1202, lines.length);
+        assertTrue(lines[0].endsWith("roles,departments"));
+        assertTrue(lines[1].contains(",\"张,\"\"三\"\"\","));
+        assertTrue(lines[1201].contains("员工") && lines[1201].contains("运维部"));
+        assertFalse(csv.toString(StandardCharsets.UTF_8).contains("hash"));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        userExportService.exportUsers(UserExportService.NDJSON, ndjson);
+        lines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1201, lines.length);
+        assertTrue(lines[0].contains("\"departmentNames\""));
+
+        // 从游标之后继续导出，跨越批次边界
+        long cursor = Long.parseLong(lines[399].substring(lines[399].indexOf(':') + 1, lines[399].indexOf(',')));
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        userExportService.exportUsers(UserExportService.NDJSON, cursor, null, rd.getId(), rest);
+        assertEquals(801, rest.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    @Test
+    void neutralisesFormulaCells() throws Exception {
+        String[] unames = { "=HYPERLINK(\"http://x\")", "+1", "-1", "@SUM(A1)", "\tcmd", "\rcmd", "a=b" };
+        for (int i = 0; i < unames.length; i++) {
+            User user = new User();
+            user.setUname(unames[i]);
+            user.setPhonenum(String.valueOf(13900000000L + i));
+            user.setPassword("hash");
+            entityManager.persist(user);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        userExportService.exportUsers(UserExportService.CSV, csv);
+        String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(",\"'=HYPERLINK(\"\"http://x\"\")\",", field(lines[1]));
+        assertEquals(",'+1,", field(lines[2]));
+        assertEquals(",'-1,", field(lines[3]));
+        assertEquals(",'@SUM(A1),", field(lines[4]));
+        assertEquals(",'\tcmd,", field(lines[5]));
+        assertEquals(",\"'\rcmd\",", field(lines[6]));
+        assertEquals(",a=b,", field(lines[7]));
+    }
+
+    // 取出uid之后的用户名字段（含两侧的逗号）
+    private static String field(String line) {
+        int start = line.indexOf(',');
+        int end = line.indexOf(",139", start);
+        return line.substring(start, end + 1);
+    }
+
+    private Role role(String name) {
+        Role role = new Role();
+        role.setName(name);
+        return entityManager.persist(role);
+    }
+
+    private Department department(String name) {
+        Department department = new Department();
+        department.setName(name);
+        return entityManager.persist(department);
+    }
+}
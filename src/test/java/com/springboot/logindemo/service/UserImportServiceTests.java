@@ -0,0 +1,107 @@
+package com.springboot.logindemo.service;
+
+import com.springboot.logindemo.domain.User;
+import com.springboot.logindemo.dto.UserImportStatusDto;
+import com.springboot.logindemo.repository.UserDao;
+import com.springboot.logindemo.service.serviceImpl.UserImportServiceImpl;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:import;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ UserImportServiceImpl.class, UserImportServiceTests.Config.class })
+@ImportAutoConfiguration({ JacksonAutoConfiguration.class, JdbcTemplateAutoConfiguration.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // 导入在后台线程的独立事务中执行
+class UserImportServiceTests {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        BCryptPasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+    }
+
+    @Resource
+    private UserImportService userImportService;
+
+    @Resource
+    private UserDao userDao;
+
+    @Test
+    void importsCsvAndReportsRowErrors() throws Exception {
+        User existing = new User();
+        existing.setUname("existing");
+        existing.setPhonenum("13900000000");
+        existing.setPassword("x");
+        userDao.save(existing);
+
+        StringBuilder csv = new StringBuilder("uname,phonenum,password\n");
+        for (int i = 0; i < 1200; i++) {
+            csv.append("user").append(i).append(',').append(13800000000L + i).append(",pass").append(i).append('\n');
+        }
+        csv.append("dup,13800000000,p\n"); // 文件内手机号重复
+        csv.append("existing,13700000000,p\n"); // 用户名已存在
+        csv.append(",13700000001,p\n"); // 缺少用户名
+
+        String jobId = userImportService.submitImport("csv",
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+        UserImportStatusDto status = await(jobId);
+
+        assertEquals("DONE", status.getState(), status.getMessage());
+        assertEquals(1203, status.getTotal());
+        assertEquals(1200, status.getImported());
+        assertEquals(3, status.getFailed());
+        List<Integer> lines = status.getErrors().stream().map(UserImportStatusDto.RowError::getLine).sorted()
+                .toList();
+        assertEquals(List.of(1202, 1203, 1204), lines);
+
+        User imported = userDao.findByUname("user7");
+        assertEquals("13800000007", imported.getPhonenum());
+        assertTrue(new BCryptPasswordEncoder().matches("pass7", imported.getPassword()));
+        assertEquals(1, imported.getLoginPermission());
+    }
+
+    @Test
+    void importsNdjson() throws Exception {
+        String ndjson = "{\"phonenum\":\"13600000000\",\"uname\":\"nd0\",\"password\":\"a\"}\n"
+                + "not json\n"
+                + "{\"phonenum\":\"13600000001\",\"uname\":\"nd1\",\"password\":\"b\"}\n";
+        UserImportStatusDto status = await(userImportService.submitImport("ndjson",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+        assertEquals("DONE", status.getState());
+        assertEquals(2, status.getImported());
+        assertEquals(2, status.getErrors().get(0).getLine());
+        assertNotNull(userDao.findByPhonenum("13600000001"));
+    }
+
+    private UserImportStatusDto await(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        UserImportStatusDto status = userImportService.getStatus(jobId);
+        while (!"DONE".equals(status.getState()) && !"FAILED".equals(status.getState())) {
+            assertTrue(System.currentTimeMillis() < deadline, "导入超时");
+            Thread.sleep(50);
+            status = userImportService.getStatus(jobId);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,174 @@
+package com.springboot.logindemo.sms;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmsDispatcherTests {
+
+    private static SmsMessage message(int i) {
+        return new SmsMessage("1380000" + String.format("%04d", i), "sign", "SMS_1", "{\"code\":\"1234\"}");
+    }
+
+    @Test
+    void sendsQueuedMessagesInBatches() throws Exception {
+        LocalSmsProvider provider = new LocalSmsProvider(20, 0, 50);
+        SmsDispatcher dispatcher = new SmsDispatcher(provider, 1000, 1, 3, 10, 100);
+        dispatcher.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                assertTrue(dispatcher.submit(message(i)));
+            }
+            waitFor(() -> provider.getSentCount() == 200);
+            // 单个工作线程处理期间新到的短信会合并成批
+            assertTrue(provider.getRequestCount() < 200);
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void retriesRetryableFailures() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        SmsProvider flaky = new SmsProvider() {
+            @Override
+            public void send(List<SmsMessage> messages) throws SmsSendException {
+                if (calls.incrementAndGet() < 3) {
+                    throw new SmsSendException("timeout", true);
+                }
+            }
+        };
+        SmsDispatcher dispatcher = new SmsDispatcher(flaky, 10, 1, 3, 5, 20);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dispatcher.bindTo(registry);
+        dispatcher.start();
+        try {
+            dispatcher.submit(message(1));
+            waitFor(() -> count(registry, "sent") == 1);
+            assertEquals(2, count(registry, "retried"));
+            assertEquals(0, count(registry, "failed"));
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void dropsNonRetryableFailures() throws Exception {
+        SmsProvider rejecting = messages -> {
+            throw new SmsSendException("isv.MOBILE_NUMBER_ILLEGAL", false);
+        };
+        SmsDispatcher dispatcher = new SmsDispatcher(rejecting, 10, 1, 3, 5, 20);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dispatcher.bindTo(registry);
+        dispatcher.start();
+        try {
+            dispatcher.submit(message(1));
+            waitFor(() -> count(registry, "failed") == 1);
+            assertEquals(0, count(registry, "retried"));
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void retriesOnlyTheFailedTemplateGroup() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        Queue<String> delivered = new ConcurrentLinkedQueue<>();
+        SmsProvider provider = new SmsProvider() {
+            @Override
+            public void send(List<SmsMessage> messages) throws SmsSendException {
+                if ("SMS_2".equals(messages.get(0).templateCode()) && failures.getAndIncrement() == 0) {
+                    throw new SmsSendException("Throttling", true);
+                }
+                messages.forEach(message -> delivered.add(message.phoneNumber()));
+            }
+
+            @Override
+            public int maxBatchSize() {
+                return 10;
+            }
+        };
+        SmsDispatcher dispatcher = new SmsDispatcher(provider, 10, 1, 3, 5, 20);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dispatcher.bindTo(registry);
+        // 启动前入队，保证两个模板的短信在同一批中
+        dispatcher.submit(message(1));
+        dispatcher.submit(new SmsMessage("13800000002", "sign", "SMS_2", "{}"));
+        dispatcher.start();
+        try {
+            waitFor(() -> count(registry, "sent") == 2);
+            assertEquals(List.of("13800000001", "13800000002"), List.copyOf(delivered));
+            assertEquals(1, count(registry, "retried"));
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void sendsRejectedBatchOneByOne() throws Exception {
+        Queue<String> delivered = new ConcurrentLinkedQueue<>();
+        SmsProvider provider = new SmsProvider() {
+            @Override
+            public void send(List<SmsMessage> messages) throws SmsSendException {
+                for (SmsMessage message : messages) {
+                    if (message.phoneNumber().equals("13800000002")) {
+                        throw new SmsSendException("isv.MOBILE_NUMBER_ILLEGAL", false);
+                    }
+                }
+                messages.forEach(message -> delivered.add(message.phoneNumber()));
+            }
+
+            @Override
+            public int maxBatchSize() {
+                return 10;
+            }
+        };
+        SmsDispatcher dispatcher = new SmsDispatcher(provider, 10, 1, 3, 5, 20);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dispatcher.bindTo(registry);
+        for (int i = 1; i <= 3; i++) {
+            dispatcher.submit(message(i));
+        }
+        dispatcher.start();
+        try {
+            waitFor(() -> count(registry, "failed") == 1
+                    && count(registry, "sent") == 2);
+            assertEquals(List.of("13800000001", "13800000003"), List.copyOf(delivered));
+            assertEquals(0, count(registry, "retried"));
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void limitsSendRatePerPhone() {
+        SmsRateLimiter limiter = new SmsRateLimiter(60, 3);
+        long now = 1_000_000_000L;
+        assertTrue(limiter.tryAcquire("13800000000", now));
+        assertFalse(limiter.tryAcquire("13800000000", now + 1_000));
+        assertTrue(limiter.tryAcquire("13900000000", now + 1_000));
+        assertTrue(limiter.tryAcquire("13800000000", now + 61_000));
+        assertTrue(limiter.tryAcquire("13800000000", now + 122_000));
+        // 一小时内已发送3条
+        assertFalse(limiter.tryAcquire("13800000000", now + 183_000));
+        assertTrue(limiter.tryAcquire("13800000000", now + 3_600_001));
+    }
+
+    private static long count(SimpleMeterRegistry registry, String name) {
+        return (long) registry.get("sms." + name).functionCounter().count();
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.springboot.logindemo.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobFileHandlerTests {
+
+    private static final byte[] CONTENT = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    private BlobFileHandler handler;
+
+    private FileUrlSigner signer;
+
+    private FileAccessInterceptor interceptor;
+
+    private String sha256;
+
+    @BeforeEach
+    void storeBlob() throws Exception {
+        BlobStore blobStore = new BlobStore(directory.toString(), "http://localhost/files");
+        handler = new BlobFileHandler(blobStore, Long.MAX_VALUE);
+        signer = new FileUrlSigner("http://localhost/files", "test-key", 30);
+        interceptor = new FileAccessInterceptor(signer);
+        sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+        Path blob = blobStore.blobPath(sha256);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, CONTENT);
+        Files.createLink(blob.resolveSibling(sha256 + ".png"), blob);
+        Files.createLink(blob.resolveSibling(sha256 + ".html"), blob);
+    }
+
+    @Test
+    void servesFullContentWithImmutableHashEtag() throws Exception {
+        MockHttpServletResponse response = get(path(".png"), null, null);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals("\"" + sha256 + "\"", response.getHeader("ETag"));
+        String cacheControl = response.getHeader("Cache-Control");
+        assertTrue(cacheControl.matches("private, max-age=\\d+, immutable"), cacheControl);
+        long maxAge = Long.parseLong(cacheControl.replaceAll("\\D", ""));
+        assertTrue(maxAge > 30 * 60 && maxAge <= 60 * 60, cacheControl);
+        assertEquals("image/png", response.getContentType());
+        assertEquals("nosniff", response.getHeader("X-Content-Type-Options"));
+        assertNull(response.getHeader("Content-Disposition"));
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+    }
+
+    @Test
+    void servesOtherExtensionsAsAttachments() throws Exception {
+        MockHttpServletResponse response = get(path(".html"), null, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("application/octet-stream", response.getContentType());
+        assertEquals("attachment", response.getHeader("Content-Disposition"));
+        assertEquals("nosniff", response.getHeader("X-Content-Type-Options"));
+    }
+
+    @Test
+    void rejectsMissingTamperedOrExpiredSignatures() throws Exception {
+        String url = signer.sign("http://localhost/files/blobs/" + path(".png"));
+        UriComponents signed = UriComponentsBuilder.fromUriString(url).build();
+        String expires = signed.getQueryParams().getFirst("expires");
+        String signature = signed.getQueryParams().getFirst("signature");
+
+        assertEquals(200, send(path(".png"), expires, signature).getStatus());
+        assertEquals(403, send(path(".png"), null, null).getStatus());
+        assertEquals(403, send(path(".html"), expires, signature).getStatus());
+        assertEquals(403, send(path(".png"), String.valueOf(Long.parseLong(expires) + 1), signature).getStatus());
+        assertEquals(403, send(path(".png"), "1", signature).getStatus());
+        // 数据库外的地址不签名
+        assertEquals("http://example.com/a.png", signer.sign("http://example.com/a.png"));
+        // 未配置密钥时不能启动
+        assertThrows(IllegalStateException.class, () -> new FileUrlSigner("http://localhost/files", " ", 30));
+    }
+
+    @Test
+    void answersConditionalRequestWithoutBody() throws Exception {
+        MockHttpServletResponse response = get(path(".png"), "W/\"other\", \"" + sha256 + "\"", null);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesSingleRangeAndRejectsUnsatisfiableRange() throws Exception {
+        MockHttpServletResponse partial = get(path(".png"), null, "bytes=4-7");
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 4-7/16", partial.getHeader("Content-Range"));
+        assertEquals("4567", partial.getContentAsString());
+
+        MockHttpServletResponse suffix = get(path(".png"), null, "bytes=-3");
+        assertEquals("def", suffix.getContentAsString());
+
+        MockHttpServletResponse unsatisfiable = get(path(".png"), null, "bytes=16-");
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */16", unsatisfiable.getHeader("Content-Range"));
+    }
+
+    @Test
+    void rejectsPathsOutsideTheShardLayout() throws Exception {
+        assertEquals(404, get(path(".jpg"), null, null).getStatus());
+        assertEquals(404, get("00/00/" + sha256 + ".png", null, null).getStatus());
+        assertEquals(404, get("../../etc/passwd", null, null).getStatus());
+    }
+
+    private String path(String extension) {
+        return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + extension;
+    }
+
+    // 按接口返回的签名链接请求，先经过签名校验
+    private MockHttpServletResponse get(String path, String ifNoneMatch, String range) throws Exception {
+        UriComponents signed = UriComponentsBuilder.fromUriString(signer.sign("http://localhost/files/blobs/" + path))
+                .build();
+        MockHttpServletRequest request = request(path, signed.getQueryParams().getFirst("expires"),
+                signed.getQueryParams().getFirst("signature"));
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        if (range != null) {
+            request.addHeader("Range", range);
+        }
+        return handle(request);
+    }
+
+    private MockHttpServletResponse send(String path, String expires, String signature) throws Exception {
+        return handle(request(path, expires, signature));
+    }
+
+    private MockHttpServletRequest request(String path, String expires, String signature) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/blobs/" + path);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, path);
+        if (expires != null) {
+            request.setParameter("expires", expires);
+        }
+        if (signature != null) {
+            request.setParameter("signature", signature);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse handle(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if (interceptor.preHandle(request, response, handler)) {
+            handler.handleRequest(request, response);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,188 @@
+package com.springboot.logindemo.storage;
+
+import com.springboot.logindemo.dao.FileBlobDao;
+import com.springboot.logindemo.domain.FileBlob;
+import com.springboot.logindemo.domain.NaturalPerson;
+import jakarta.annotation.Resource;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.util.FileSystemUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:blobs;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "file.access.path=http://localhost/files",
+        "file.upload.max-bytes=1048576",
+        "file.upload.fsync=false" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ BlobStore.class, StreamingFileWriter.class })
+class BlobStoreTests {
+
+    private static final Path UPLOAD_PATH;
+
+    static {
+        try {
+            UPLOAD_PATH = Files.createTempDirectory("blob-store");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void uploadPath(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.path", UPLOAD_PATH::toString);
+    }
+
+    @Resource
+    private BlobStore blobStore;
+
+    @Resource
+    private FileBlobDao fileBlobDao;
+
+    @Resource
+    private TestEntityManager entityManager;
+
+    // 数据库随测试事务回滚，磁盘上的文件也要清掉
+    @BeforeEach
+    void clearBlobs() throws IOException {
+        FileSystemUtils.deleteRecursively(blobStore.root());
+    }
+
+    @Test
+    void storesIdenticalContentOnce() throws Exception {
+        StoredBlob first = blobStore.store(content("营业执照"), ".pdf");
+        StoredBlob second = blobStore.store(content("营业执照"), ".PDF");
+
+        assertFalse(first.deduplicated());
+        assertTrue(second.deduplicated());
+        assertEquals(first.sha256(), second.sha256());
+        String prefix = "http://localhost/files/blobs/" + first.sha256().substring(0, 2) + "/"
+                + first.sha256().substring(2, 4) + "/" + first.sha256();
+        assertEquals(prefix + ".pdf", first.url());
+        assertEquals(first.sha256(), BlobStore.sha256Of(second.url()));
+
+        Path blob = blobStore.blobPath(first.sha256());
+        assertTrue(Files.isSameFile(blob, blob.resolveSibling(first.sha256() + ".pdf")));
+        assertTrue(Files.isSameFile(blob, blob.resolveSibling(first.sha256() + ".PDF")));
+        assertEquals(1, fileBlobDao.count());
+        try (var incoming = Files.list(blobStore.incomingDirectory())) {
+            assertEquals(0, incoming.count());
+        }
+    }
+
+    @Test
+    void compactorKeepsReferencedContentAndRemovesOrphans() throws Exception {
+        StoredBlob referenced = blobStore.store(content("承诺书"), ".pdf");
+        StoredBlob orphan = blobStore.store(content("未提交的文件"), ".jpg");
+        NaturalPerson person = new NaturalPerson();
+        person.setAuthId(1L);
+        person.setName("张三");
+        person.setIdCard("110101199001011234");
+        person.setPhone("13800000000");
+        person.setBankCard("6222000000000000");
+        person.setPromiseFile(referenced.url());
+        entityManager.persist(person);
+        blobStore.retain(referenced.url());
+        // 旧的按日期存放的文件路径不受影响
+        blobStore.retain("http://localhost/files/license/20250416/a.pdf");
+        entityManager.flush();
+        entityManager.clear();
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        // 记录的删除回滚时文件仍在
+        Path orphanBlob = blobStore.blobPath(orphan.sha256());
+        TestTransaction.start();
+        assertTrue(blobStore.deleteIfOrphan(orphan.sha256(), LocalDateTime.now().plusHours(1)));
+        assertTrue(Files.exists(orphanBlob));
+        TestTransaction.end();
+        assertTrue(fileBlobDao.existsById(orphan.sha256()));
+        assertTrue(Files.exists(orphanBlob));
+
+        // 不在事务中调用，每份内容的清除各自提交后删除文件
+        BlobCompactor compactor = new BlobCompactor(blobStore, fileBlobDao, false, 60, 24, 30);
+        assertEquals(1, compactor.compact(LocalDateTime.now().plusHours(25)));
+
+        assertTrue(fileBlobDao.existsById(referenced.sha256()));
+        assertEquals(1, fileBlobDao.findById(referenced.sha256()).orElseThrow().getRefCount());
+        assertTrue(Files.exists(blobStore.blobPath(referenced.sha256())));
+        assertFalse(fileBlobDao.existsById(orphan.sha256()));
+        assertFalse(Files.exists(orphanBlob));
+        assertFalse(Files.exists(orphanBlob.resolveSibling(orphan.sha256() + ".jpg")));
+
+        // 清除已提交的数据，不影响其他测试
+        TestTransaction.start();
+        TestTransaction.flagForCommit();
+        entityManager.remove(entityManager.find(NaturalPerson.class, person.getId()));
+        fileBlobDao.deleteAllInBatch();
+        TestTransaction.end();
+    }
+
+    @Test
+    void rejectsUrlsThatOutliveTheOrphanGracePeriod() {
+        assertThrows(IllegalStateException.class, () -> new BlobCompactor(blobStore, fileBlobDao, false, 60, 1, 31));
+    }
+
+    @Test
+    void generatesThumbnailAndPreviewOutOfBand() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB), "png", png);
+        StoredBlob image = blobStore.store(new ByteArrayInputStream(png.toByteArray()), ".png");
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.save(pdf);
+        }
+        StoredBlob license = blobStore.store(new ByteArrayInputStream(pdf.toByteArray()), ".pdf");
+
+        ThumbnailPipeline pipeline = new ThumbnailPipeline(blobStore, 320, 1600, 50_000_000, 1, 10);
+        pipeline.generate(image.sha256(), ".png");
+        pipeline.generate(license.sha256(), ".pdf");
+        entityManager.clear();
+
+        Path imageBlob = blobStore.blobPath(image.sha256());
+        BufferedImage thumbnail = ImageIO.read(imageBlob.resolveSibling(image.sha256() + "-thumb.jpg").toFile());
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(160, thumbnail.getHeight());
+        BufferedImage preview = ImageIO.read(imageBlob.resolveSibling(image.sha256() + "-preview.jpg").toFile());
+        assertEquals(1600, preview.getWidth());
+        assertTrue(blobStore.hasThumbnail(license.sha256()));
+        assertFalse(Files.exists(blobStore.blobPath(license.sha256()).resolveSibling(license.sha256() + "-preview.jpg")));
+
+        Map<String, FileBlob> blobs = blobStore.findAll(List.of(image.url(), license.url()));
+        assertEquals(image.url().replace(".png", "-thumb.jpg"), blobs.get(image.url()).getThumbnailUrl());
+        assertEquals(image.url().replace(".png", "-preview.jpg"), blobs.get(image.url()).getPreviewUrl());
+        assertNotNull(blobs.get(license.url()).getThumbnailUrl());
+        assertNull(blobs.get(license.url()).getPreviewUrl());
+        pipeline.shutdown();
+    }
+
+    private static ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,57 @@
+package com.springboot.logindemo.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingFileWriterTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesContentAndHashInChunks() throws Exception {
+        // 大于一个分块，且不是分块大小的整数倍
+        byte[] content = new byte[200 * 1024 + 17];
+        new Random(1).nextBytes(content);
+        StreamingFileWriter writer = new StreamingFileWriter(content.length, true);
+
+        Path target = directory.resolve("license/20250416/a.pdf");
+        StoredFile stored = writer.write(new ByteArrayInputStream(content), target);
+
+        assertEquals(target, stored.path());
+        assertEquals(content.length, stored.size());
+        assertArrayEquals(content, Files.readAllBytes(target));
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(expected, stored.sha256());
+        assertEquals(1, fileCount(target.getParent()));
+    }
+
+    @Test
+    void abortsAndRemovesTempFileWhenLimitExceeded() throws Exception {
+        StreamingFileWriter writer = new StreamingFileWriter(1024, false);
+        Path target = directory.resolve("b.pdf");
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> writer.write(new ByteArrayInputStream(new byte[1025]), target));
+        assertTrue(e.getMessage().contains("上限"));
+        assertFalse(Files.exists(target));
+        assertEquals(0, fileCount(directory));
+    }
+
+    private static long fileCount(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
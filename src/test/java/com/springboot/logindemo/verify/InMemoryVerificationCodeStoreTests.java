@@ -0,0 +1,70 @@
+package com.springboot.logindemo.verify;
+
+import com.springboot.logindemo.verify.VerificationCodeStore.Result;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryVerificationCodeStoreTests {
+
+    private static final String PHONE = "13800000000";
+
+    @Test
+    void codeIsConsumedOnce() {
+        VerificationCodeStore store = new InMemoryVerificationCodeStore(300, 5, 900);
+        assertEquals(Result.EXPIRED, store.consume(PHONE, "1234"));
+        assertTrue(store.save(PHONE, "1234"));
+        assertEquals(Result.OK, store.consume(PHONE, "1234"));
+        assertEquals(Result.EXPIRED, store.consume(PHONE, "1234"));
+    }
+
+    @Test
+    void locksAfterTooManyMismatches() {
+        VerificationCodeStore store = new InMemoryVerificationCodeStore(300, 3, 900);
+        store.save(PHONE, "1234");
+        assertEquals(Result.MISMATCH, store.consume(PHONE, "0000"));
+        assertEquals(Result.MISMATCH, store.consume(PHONE, "0000"));
+        assertEquals(Result.LOCKED, store.consume(PHONE, "0000"));
+        // 锁定期内正确的验证码也不能使用，也不能重新发送
+        assertEquals(Result.LOCKED, store.consume(PHONE, "1234"));
+        assertFalse(store.save(PHONE, "5678"));
+    }
+
+    @Test
+    void newCodeResetsAttempts() {
+        VerificationCodeStore store = new InMemoryVerificationCodeStore(300, 2, 900);
+        store.save(PHONE, "1234");
+        assertEquals(Result.MISMATCH, store.consume(PHONE, "0000"));
+        store.save(PHONE, "5678");
+        assertEquals(Result.MISMATCH, store.consume(PHONE, "1234"));
+        assertEquals(Result.OK, store.consume(PHONE, "5678"));
+    }
+
+    @Test
+    void concurrentConsumersSucceedOnce() throws Exception {
+        VerificationCodeStore store = new InMemoryVerificationCodeStore(300, 5, 900);
+        store.save(PHONE, "1234");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Result>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(pool.submit(() -> store.consume(PHONE, "1234")));
+            }
+            int ok = 0;
+            for (Future<Result> result : results) {
+                if (result.get() == Result.OK) {
+                    ok++;
+                }
+            }
+            assertEquals(1, ok);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}